@@ -0,0 +1,33 @@
+package ru.practicum.ewm.common.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the composite indexes behind the keyset pagination of the public event search:
+ * (event_date, id) for the EVENT_DATE sort and (views, id) for the VIEWS sort, so a page
+ * after a cursor is an index range scan instead of a sort of every matching event.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventSortIndexInitializer {
+
+    private static final String EVENT_DATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS events_event_date_id_idx ON events (event_date, id)";
+    private static final String VIEWS_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS events_views_id_idx ON events (views, id)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        jdbcTemplate.execute(EVENT_DATE_INDEX_SQL);
+        jdbcTemplate.execute(VIEWS_INDEX_SQL);
+        log.info("Sort indexes for events are in place");
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.ewm.common.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers HQL functions used by the public event text search:
+ * - event_text_match(annotation, description, text) - boolean match
+ * - event_text_rank(annotation, description, text) - relevance, higher is better
+ * On PostgreSQL they are backed by tsvector/tsquery and can use the GIN index
+ * created by {@link EventTextSearchIndexInitializer}; other databases (H2 in tests)
+ * fall back to a case-insensitive substring search.
+ * Registered through META-INF/services/org.hibernate.boot.model.FunctionContributor.
+ */
+public class EventTextSearchFunctions implements FunctionContributor {
+
+    public static final String MATCH_FUNCTION = "event_text_match";
+    public static final String RANK_FUNCTION = "event_text_rank";
+
+    /**
+     * Indexed document expression, must be identical in queries and in the index definition.
+     */
+    public static final String POSTGRES_DOCUMENT = "to_tsvector('simple', %s || ' ' || %s)";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<Boolean> booleanType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.BOOLEAN);
+        BasicType<Double> doubleType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.DOUBLE);
+
+        String matchPattern;
+        String rankPattern;
+
+        if (functionContributions.getDialect() instanceof PostgreSQLDialect) {
+            String document = String.format(POSTGRES_DOCUMENT, "?1", "?2");
+            matchPattern = "(" + document + " @@ plainto_tsquery('simple', ?3))";
+            rankPattern = "ts_rank(" + document + ", plainto_tsquery('simple', ?3))";
+        } else {
+            matchPattern = "(locate(lower(?3), lower(?1 || ' ' || ?2)) > 0)";
+            // earlier occurrence (annotation goes first) ranks higher
+            rankPattern = "(1.0 / locate(lower(?3), lower(?1 || ' ' || ?2)))";
+        }
+
+        functionContributions.getFunctionRegistry()
+                .registerPattern(MATCH_FUNCTION, matchPattern, booleanType);
+        functionContributions.getFunctionRegistry()
+                .registerPattern(RANK_FUNCTION, rankPattern, doubleType);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.ewm.common.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the GIN index for the public event text search on PostgreSQL.
+ * Hibernate schema update cannot express expression indexes, so it is created here
+ * once the tables exist. Other databases use the non-indexed fallback.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventTextSearchIndexInitializer {
+
+    private static final String INDEX_SQL = "CREATE INDEX IF NOT EXISTS events_text_search_idx ON events USING GIN ("
+            + String.format(EventTextSearchFunctions.POSTGRES_DOCUMENT, "annotation", "description") + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndex() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+
+        if (!"PostgreSQL".equalsIgnoreCase(database)) {
+            log.info("Text search index skipped for database {}", database);
+            return;
+        }
+
+        jdbcTemplate.execute(INDEX_SQL);
+        log.info("Text search index for events is in place");
+    }
+}
@@ -1,17 +1,80 @@
 package ru.practicum.ewm.common.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.practicum.stats.client.HitBufferSettings;
+import ru.practicum.stats.client.OverflowPolicy;
 import ru.practicum.stats.client.StatsServiceClient;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 @Configuration
 public class StatsClientConfig {
 
-    @Bean
+    /**
+     * Stats client with the asynchronous hit buffer; close() flushes it on shutdown.
+     * Undeliverable hits are kept on disk in stats-server.hits.spool.dir (data/stats-spool by default)
+     * until the server is back; an empty value turns the spool off and drops them.
+     */
+    @Bean(destroyMethod = "close")
     public StatsServiceClient statsServiceClient(
-            @Value("${stats-server.url}") String serverUrl
+            @Value("${stats-server.url}") String serverUrl,
+            @Value("${stats-server.hits.capacity:10000}") int capacity,
+            @Value("${stats-server.hits.batch-size:100}") int batchSize,
+            @Value("${stats-server.hits.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${stats-server.hits.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+            @Value("${stats-server.hits.block-timeout-ms:50}") long blockTimeoutMs,
+            @Value("${stats-server.hits.spool.dir:data/stats-spool}") String spoolDir,
+            @Value("${stats-server.hits.spool.max-bytes:268435456}") long spoolMaxBytes,
+            @Value("${stats-server.hits.spool.replay-rate:500}") int replayRate,
+            @Value("${stats-server.hits.spool.replay-interval-ms:5000}") long replayIntervalMs,
+            @Value("${stats-server.hits.spool.replay-max-backoff-ms:300000}") long replayMaxBackoffMs,
+            MeterRegistry meterRegistry
     ) {
-        return new StatsServiceClient(serverUrl);
+        HitBufferSettings settings = HitBufferSettings.builder()
+                .capacity(capacity)
+                .batchSize(batchSize)
+                .flushInterval(Duration.ofMillis(flushIntervalMs))
+                .overflowPolicy(overflowPolicy)
+                .blockTimeout(Duration.ofMillis(blockTimeoutMs))
+                .spoolDir(spoolDir.isBlank() ? null : Path.of(spoolDir))
+                .spoolMaxBytes(spoolMaxBytes)
+                .replayRate(replayRate)
+                .replayInterval(Duration.ofMillis(replayIntervalMs))
+                .replayMaxBackoff(Duration.ofMillis(replayMaxBackoffMs))
+                .build();
+
+        StatsServiceClient client = new StatsServiceClient(serverUrl, settings);
+
+        FunctionCounter.builder("stats.client.hits.flushed", client, StatsServiceClient::getFlushedHitCount)
+                .description("Hits delivered to the stats server")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits.dropped", client, StatsServiceClient::getDroppedHitCount)
+                .description("Hits lost because of buffer overflow or delivery failure")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.hits.buffered", client, StatsServiceClient::getBufferedHitCount)
+                .description("Hits waiting in the buffer")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.client.hits.rejected", client, StatsServiceClient::getRejectedHitCount)
+                .description("Spooled hits dropped because the stats server rejected them")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.hits.spooled", client, StatsServiceClient::getSpooledHitCount)
+                .description("Hits waiting in the disk spool")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.hits.spool.size", client, StatsServiceClient::getSpoolSizeBytes)
+                .description("Size of the disk spool")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.hits.spool.age", client, c -> c.getSpoolBacklogAge().toMillis() / 1000.0)
+                .description("Age of the oldest spooled hit")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        return client;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package ru.practicum.ewm.common.util;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.practicum.ewm.common.exceptions.BadRequestException;
+import ru.practicum.ewm.dto.event.EventListItemDto;
+import ru.practicum.ewm.model.Event;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in an event listing: the sort key and id of the last returned event.
+ * Serialized as an opaque url-safe token, e.g. base64("D|2025-01-01T10:00|42").
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class EventCursor {
+
+    public enum Kind {
+        EVENT_DATE("D"),
+        VIEWS("V"),
+        ID("I");
+
+        private final String code;
+
+        Kind(String code) {
+            this.code = code;
+        }
+    }
+
+    private static final String SEPARATOR = "|";
+
+    private final Kind kind;
+    private final LocalDateTime eventDate;
+    private final Long views;
+    private final Long id;
+
+    public static EventCursor after(Event event, Kind kind) {
+        return of(kind, event.getEventDate(), event.getViews(), event.getId());
+    }
+
+    public static EventCursor after(EventListItemDto event, Kind kind) {
+        return of(kind, event.getEventDate(), event.getViews(), event.getId());
+    }
+
+    private static EventCursor of(Kind kind, LocalDateTime eventDate, Long views, Long id) {
+        return switch (kind) {
+            case EVENT_DATE -> new EventCursor(kind, eventDate, null, id);
+            case VIEWS -> new EventCursor(kind, null, views, id);
+            case ID -> new EventCursor(kind, null, null, id);
+        };
+    }
+
+    public String encode() {
+        String key = switch (kind) {
+            case EVENT_DATE -> eventDate.toString();
+            case VIEWS -> views.toString();
+            case ID -> "";
+        };
+        String raw = kind.code + SEPARATOR + key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()}; returns null for an absent token.
+     */
+    public static EventCursor decode(String token, Kind expected) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+
+            if (parts.length != 3 || !expected.code.equals(parts[0])) {
+                throw new BadRequestException("Cursor does not match the requested sort");
+            }
+
+            long id = Long.parseLong(parts[2]);
+            return switch (expected) {
+                case EVENT_DATE -> new EventCursor(expected, LocalDateTime.parse(parts[1]), null, id);
+                case VIEWS -> new EventCursor(expected, null, Long.parseLong(parts[1]), id);
+                case ID -> new EventCursor(expected, null, null, id);
+            };
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
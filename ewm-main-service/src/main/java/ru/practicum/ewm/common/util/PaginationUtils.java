@@ -1,6 +1,5 @@
 package ru.practicum.ewm.common.util;
 
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
@@ -10,12 +9,10 @@ public final class PaginationUtils {
     }
 
     public static Pageable toPageable(int from, int size) {
-        int page = from / size;
-        return PageRequest.of(page, size);
+        return new OffsetPageRequest(from, size, Sort.unsorted());
     }
 
     public static Pageable toPageable(int from, int size, Sort sort) {
-        int page = from / size;
-        return PageRequest.of(page, size, sort);
+        return new OffsetPageRequest(from, size, sort);
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.dto.event.EventFullDto;
 import ru.practicum.ewm.dto.event.UpdateEventAdminRequest;
 import ru.practicum.ewm.service.event.AdminEventService;
@@ -24,13 +25,14 @@ public class AdminEventsController {
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) String rangeStart,
             @RequestParam(required = false) String rangeEnd,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int from,
             @RequestParam(defaultValue = "10") int size
     ) {
-        List<EventFullDto> result = adminEventService.getEvents(
-                users, states, categories, rangeStart, rangeEnd, from, size
+        CursorPage<EventFullDto> result = adminEventService.getEvents(
+                users, states, categories, rangeStart, rangeEnd, cursor, from, size
         );
-        return ResponseEntity.ok(result);
+        return result.toResponseEntity();
     }
 
     @PatchMapping("/{eventId}")
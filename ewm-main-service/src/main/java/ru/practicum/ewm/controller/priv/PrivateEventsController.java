@@ -4,6 +4,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.dto.event.EventFullDto;
 import ru.practicum.ewm.dto.event.EventShortDto;
 import ru.practicum.ewm.dto.event.NewEventDto;
@@ -31,12 +32,12 @@ public class PrivateEventsController {
     @GetMapping
     public ResponseEntity<List<EventShortDto>> getUserEvents(
             @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int from,
             @RequestParam(defaultValue = "10") int size
     ) {
-        return ResponseEntity.ok(
-                privateEventService.getUserEvents(userId, from, size)
-        );
+        return privateEventService.getUserEvents(userId, cursor, from, size)
+                .toResponseEntity();
     }
 
     @GetMapping("/{eventId}")
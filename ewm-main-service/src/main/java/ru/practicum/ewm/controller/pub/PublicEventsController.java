@@ -4,6 +4,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.dto.event.EventFullDto;
 import ru.practicum.ewm.dto.event.EventShortDto;
 import ru.practicum.ewm.service.event.PublicEventService;
@@ -28,17 +29,18 @@ public class PublicEventsController {
             @RequestParam(required = false) String rangeEnd,
             @RequestParam(defaultValue = "false") Boolean onlyAvailable,
             @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int from,
             @RequestParam(defaultValue = "10") int size,
             HttpServletRequest request
     ) {
         statisticsService.saveHit(request);
-        List<EventShortDto> events = publicEventService.getEvents(
+        CursorPage<EventShortDto> events = publicEventService.getEvents(
                 text, categories, paid, rangeStart, rangeEnd,
-                onlyAvailable, sort, from, size
+                onlyAvailable, sort, cursor, from, size
         );
 
-        return ResponseEntity.ok(events);
+        return events.toResponseEntity();
     }
 
     @GetMapping("/{id}")
@@ -10,7 +10,7 @@ import ru.practicum.ewm.dto.location.LocationDto;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class EventFullDto {
     private Long id;
     private String annotation;
@@ -0,0 +1,29 @@
+package ru.practicum.ewm.dto.event;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat projection of an event for list endpoints: only the columns needed for EventShortDto
+ * and the keyset cursor, with category and initiator joined in the same select.
+ * The long description is never read.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventListItemDto {
+    private Long id;
+    private String annotation;
+    private String title;
+    private LocalDateTime eventDate;
+    private Boolean paid;
+    private Long confirmedRequests;
+    private Long views;
+    private Long categoryId;
+    private String categoryName;
+    private Long initiatorId;
+    private String initiatorName;
+}
@@ -0,0 +1,13 @@
+package ru.practicum.ewm.dto.event;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventViewsDto {
+    private Long eventId;
+    private Long views;
+}
@@ -0,0 +1,13 @@
+package ru.practicum.ewm.dto.request;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EventRequestCountDto {
+    private Long eventId;
+    private Long count;
+}
@@ -4,7 +4,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import ru.practicum.ewm.common.util.DateTimeUtils;
 import ru.practicum.ewm.constants.EventState;
+import ru.practicum.ewm.dto.category.CategoryDto;
 import ru.practicum.ewm.dto.event.*;
+import ru.practicum.ewm.dto.user.UserShortDto;
 import ru.practicum.ewm.model.Category;
 import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.model.Location;
@@ -37,7 +39,7 @@ public class EventMapper {
                 .build();
     }
 
-    public EventShortDto toShortDto(Event e, long confirmedRequests, long views) {
+    public EventShortDto toShortDto(Event e, long views) {
         return EventShortDto.builder()
                 .id(e.getId())
                 .annotation(e.getAnnotation())
@@ -46,12 +48,32 @@ public class EventMapper {
                 .category(categoryMapper.toDto(e.getCategory()))
                 .initiator(userMapper.toShort(e.getInitiator()))
                 .paid(e.getPaid())
-                .confirmedRequests(confirmedRequests)
+                .confirmedRequests(e.getConfirmedRequests())
                 .views(views)
                 .build();
     }
 
-    public EventFullDto toFullDto(Event e, long confirmedRequests, long views) {
+    public EventShortDto toShortDto(EventListItemDto row, long views) {
+        return EventShortDto.builder()
+                .id(row.getId())
+                .annotation(row.getAnnotation())
+                .title(row.getTitle())
+                .eventDate(row.getEventDate().format(DateTimeUtils.FORMATTER))
+                .category(CategoryDto.builder()
+                        .id(row.getCategoryId())
+                        .name(row.getCategoryName())
+                        .build())
+                .initiator(UserShortDto.builder()
+                        .id(row.getInitiatorId())
+                        .name(row.getInitiatorName())
+                        .build())
+                .paid(row.getPaid())
+                .confirmedRequests(row.getConfirmedRequests())
+                .views(views)
+                .build();
+    }
+
+    public EventFullDto toFullDto(Event e, long views) {
         return EventFullDto.builder()
                 .id(e.getId())
                 .annotation(e.getAnnotation())
@@ -68,7 +90,7 @@ public class EventMapper {
                 .participantLimit(e.getParticipantLimit())
                 .requestModeration(e.getRequestModeration())
                 .state(e.getState())
-                .confirmedRequests(confirmedRequests)
+                .confirmedRequests(e.getConfirmedRequests())
                 .views(views)
                 .build();
     }
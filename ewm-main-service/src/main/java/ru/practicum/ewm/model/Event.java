@@ -2,6 +2,8 @@ package ru.practicum.ewm.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import ru.practicum.ewm.constants.EventState;
 
 import java.time.LocalDateTime;
@@ -13,6 +15,7 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @Entity
+@DynamicUpdate
 @Table(name = "events")
 public class Event {
 
@@ -47,6 +50,25 @@ public class Event {
     @Column(nullable = false)
     private Boolean requestModeration;
 
+    /**
+     * Denormalized number of CONFIRMED requests. Changed only through the atomic
+     * updates of EventRepository; @DynamicUpdate keeps entity saves from
+     * overwriting it with a stale value.
+     */
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long confirmedRequests = 0L;
+
+    /**
+     * Local copy of the event views from the stats service, refreshed by
+     * EventViewsSynchronizer. Used to sort public search by views in the database.
+     */
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long views = 0L;
+
     @Column(nullable = false, length = 120)
     private String title;
 
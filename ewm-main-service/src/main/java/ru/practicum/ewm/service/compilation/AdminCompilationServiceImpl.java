@@ -5,7 +5,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.common.exceptions.NotFoundException;
-import ru.practicum.ewm.constants.RequestStatus;
 import ru.practicum.ewm.dto.compilation.CompilationDto;
 import ru.practicum.ewm.dto.compilation.NewCompilationDto;
 import ru.practicum.ewm.dto.compilation.UpdateCompilationRequest;
@@ -17,9 +16,10 @@ import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.service.statistics.StatisticsService;
 import ru.practicum.ewm.storage.CompilationRepository;
 import ru.practicum.ewm.storage.EventRepository;
-import ru.practicum.ewm.storage.ParticipationRequestRepository;
 
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -32,7 +32,6 @@ public class AdminCompilationServiceImpl implements AdminCompilationService {
     private final EventRepository eventRepository;
     private final CompilationMapper compilationMapper;
     private final EventMapper eventMapper;
-    private final ParticipationRequestRepository requestRepository;
     private final StatisticsService statisticsService;
 
     /**
@@ -118,9 +117,12 @@ public class AdminCompilationServiceImpl implements AdminCompilationService {
 
         CompilationDto dto = compilationMapper.toDto(comp);
 
+        List<Long> eventIds = comp.getEvents().stream().map(Event::getId).toList();
+        Map<Long, Long> views = statisticsService.getViews(eventIds);
+
         dto.setEvents(
                 comp.getEvents().stream()
-                        .map(this::toShortWithStats)
+                        .map(event -> toShortWithStats(event, views))
                         .collect(Collectors.toList())
         );
 
@@ -129,18 +131,11 @@ public class AdminCompilationServiceImpl implements AdminCompilationService {
 
     /**
      * Creates EventShortDto enriched with:
-     * - number of confirmed participation requests
-     * - number of views from statistics service
+     * - number of confirmed participation requests stored on the event
+     * - number of views from the preloaded statistics
      */
-    private EventShortDto toShortWithStats(Event event) {
-
-        long confirmed = requestRepository.countByEventIdAndStatus(
-                event.getId(),
-                RequestStatus.CONFIRMED
-        );
-
-        long views = statisticsService.getViews(event.getId());
+    private EventShortDto toShortWithStats(Event event, Map<Long, Long> views) {
 
-        return eventMapper.toShortDto(event, confirmed, views);
+        return eventMapper.toShortDto(event, views.getOrDefault(event.getId(), 0L));
     }
 }
\ No newline at end of file
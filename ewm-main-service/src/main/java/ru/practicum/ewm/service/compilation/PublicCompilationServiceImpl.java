@@ -6,7 +6,6 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.common.exceptions.NotFoundException;
 import ru.practicum.ewm.common.util.PaginationUtils;
-import ru.practicum.ewm.constants.RequestStatus;
 import ru.practicum.ewm.dto.compilation.CompilationDto;
 import ru.practicum.ewm.dto.event.EventShortDto;
 import ru.practicum.ewm.mapper.CompilationMapper;
@@ -15,9 +14,10 @@ import ru.practicum.ewm.model.Compilation;
 import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.service.statistics.StatisticsService;
 import ru.practicum.ewm.storage.CompilationRepository;
-import ru.practicum.ewm.storage.ParticipationRequestRepository;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,7 +28,6 @@ public class PublicCompilationServiceImpl implements PublicCompilationService {
     private final CompilationRepository compilationRepository;
     private final CompilationMapper compilationMapper;
     private final EventMapper eventMapper;
-    private final ParticipationRequestRepository requestRepository;
     private final StatisticsService statisticsService;
 
     /**
@@ -51,8 +50,11 @@ public class PublicCompilationServiceImpl implements PublicCompilationService {
 
         log.debug("Found {} compilations", compilations.size());
 
+        Set<Long> eventIds = collectEventIds(compilations);
+        Map<Long, Long> views = statisticsService.getViews(eventIds);
+
         return compilations.stream()
-                .map(this::enrichCompilation)
+                .map(comp -> enrichCompilation(comp, views))
                 .collect(Collectors.toList());
     }
 
@@ -68,13 +70,28 @@ public class PublicCompilationServiceImpl implements PublicCompilationService {
                     return new NotFoundException("Compilation with id=" + compId + " was not found");
                 });
 
-        return enrichCompilation(comp);
+        Set<Long> eventIds = collectEventIds(List.of(comp));
+        Map<Long, Long> views = statisticsService.getViews(eventIds);
+
+        return enrichCompilation(comp, views);
+    }
+
+    /**
+     * Collects ids of all events of the given compilations,
+     * so that their statistics can be requested at once.
+     */
+    private Set<Long> collectEventIds(List<Compilation> compilations) {
+        return compilations.stream()
+                .filter(comp -> comp.getEvents() != null)
+                .flatMap(comp -> comp.getEvents().stream())
+                .map(Event::getId)
+                .collect(Collectors.toSet());
     }
 
     /**
      * Builds a CompilationDto enriched with event statistics.
      */
-    private CompilationDto enrichCompilation(Compilation comp) {
+    private CompilationDto enrichCompilation(Compilation comp, Map<Long, Long> views) {
 
         if (comp.getEvents() == null) {
             log.warn("Compilation {} has null events list", comp.getId());
@@ -85,7 +102,7 @@ public class PublicCompilationServiceImpl implements PublicCompilationService {
         dto.setEvents(
                 comp.getEvents() == null ? List.of() :
                         comp.getEvents().stream()
-                                .map(this::toShortWithStats)
+                                .map(event -> toShortWithStats(event, views))
                                 .collect(Collectors.toList())
         );
 
@@ -95,15 +112,8 @@ public class PublicCompilationServiceImpl implements PublicCompilationService {
     /**
      * Converts an Event to EventShortDto including confirmed requests and view stats.
      */
-    private EventShortDto toShortWithStats(Event event) {
-
-        long confirmed = requestRepository.countByEventIdAndStatus(
-                event.getId(),
-                RequestStatus.CONFIRMED
-        );
-
-        long views = statisticsService.getViews(event.getId());
+    private EventShortDto toShortWithStats(Event event, Map<Long, Long> views) {
 
-        return eventMapper.toShortDto(event, confirmed, views);
+        return eventMapper.toShortDto(event, views.getOrDefault(event.getId(), 0L));
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package ru.practicum.ewm.service.event;
 
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.dto.event.EventFullDto;
 import ru.practicum.ewm.dto.event.UpdateEventAdminRequest;
 
@@ -7,13 +8,14 @@ import java.util.List;
 
 public interface AdminEventService {
 
-    List<EventFullDto> getEvents(List<Long> users,
-                                 List<String> states,
-                                 List<Long> categories,
-                                 String rangeStart,
-                                 String rangeEnd,
-                                 int from,
-                                 int size);
+    CursorPage<EventFullDto> getEvents(List<Long> users,
+                                       List<String> states,
+                                       List<Long> categories,
+                                       String rangeStart,
+                                       String rangeEnd,
+                                       String cursor,
+                                       int from,
+                                       int size);
 
     EventFullDto updateEvent(Long eventId, UpdateEventAdminRequest dto);
 }
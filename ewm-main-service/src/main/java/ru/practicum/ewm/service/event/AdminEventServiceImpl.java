@@ -3,16 +3,18 @@ package ru.practicum.ewm.service.event;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.common.exceptions.BadRequestException;
 import ru.practicum.ewm.common.exceptions.ConflictException;
 import ru.practicum.ewm.common.exceptions.NotFoundException;
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.common.util.DateTimeUtils;
+import ru.practicum.ewm.common.util.EventCursor;
 import ru.practicum.ewm.common.util.PaginationUtils;
 import ru.practicum.ewm.constants.AdminStateAction;
 import ru.practicum.ewm.constants.EventState;
-import ru.practicum.ewm.constants.RequestStatus;
 import ru.practicum.ewm.dto.event.EventFullDto;
 import ru.practicum.ewm.dto.event.UpdateEventAdminRequest;
 import ru.practicum.ewm.mapper.EventMapper;
@@ -24,10 +26,10 @@ import ru.practicum.ewm.service.statistics.StatisticsService;
 import ru.practicum.ewm.storage.CategoryRepository;
 import ru.practicum.ewm.storage.EventRepository;
 import ru.practicum.ewm.storage.LocationRepository;
-import ru.practicum.ewm.storage.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of admin event management operations.
@@ -41,23 +43,26 @@ public class AdminEventServiceImpl implements AdminEventService {
     private final EventRepository eventRepository;
     private final CategoryRepository categoryRepository;
     private final LocationRepository locationRepository;
-    private final ParticipationRequestRepository requestRepository;
 
     private final EventMapper eventMapper;
     private final LocationMapper locationMapper;
     private final StatisticsService statisticsService;
+    private final EventSearchCache searchCache;
+    private final EventDetailsCache eventCache;
 
     /**
-     * Searches events with all admin filters.
+     * Searches events with all admin filters, ordered by id.
+     * When a cursor is given, reading continues after it and from is ignored.
      */
     @Override
-    public List<EventFullDto> getEvents(List<Long> users,
-                                        List<String> states,
-                                        List<Long> categories,
-                                        String rangeStart,
-                                        String rangeEnd,
-                                        int from,
-                                        int size) {
+    public CursorPage<EventFullDto> getEvents(List<Long> users,
+                                              List<String> states,
+                                              List<Long> categories,
+                                              String rangeStart,
+                                              String rangeEnd,
+                                              String cursor,
+                                              int from,
+                                              int size) {
 
         log.info("ADMIN: Searching events with filters users={}, states={}, categories={}, rangeStart={}, rangeEnd={}",
                 users, states, categories, rangeStart, rangeEnd);
@@ -80,7 +85,9 @@ public class AdminEventServiceImpl implements AdminEventService {
         LocalDateTime end = (rangeEnd == null) ? null :
                 LocalDateTime.parse(rangeEnd, DateTimeUtils.FORMATTER);
 
-        Pageable pageable = PaginationUtils.toPageable(from, size);
+        EventCursor after = EventCursor.decode(cursor, EventCursor.Kind.ID);
+
+        Pageable pageable = PaginationUtils.toPageable(after == null ? from : 0, size, Sort.by("id"));
 
         List<Event> events = eventRepository.searchAdminEvents(
                 users,
@@ -88,21 +95,24 @@ public class AdminEventServiceImpl implements AdminEventService {
                 categories,
                 start,
                 end,
+                after == null ? null : after.getId(),
                 pageable
         );
 
         log.debug("ADMIN: event search result count: {}", events.size());
 
-        return events.stream()
-                .map(event -> {
-                    long confirmed = requestRepository.countByEventIdAndStatus(
-                            event.getId(),
-                            RequestStatus.CONFIRMED
-                    );
-                    long views = statisticsService.getViews(event.getId());
-                    return eventMapper.toFullDto(event, confirmed, views);
-                })
+        Map<Long, Long> views = statisticsService.getViews(
+                events.stream().map(Event::getId).toList());
+
+        List<EventFullDto> result = events.stream()
+                .map(event -> eventMapper.toFullDto(event, views.getOrDefault(event.getId(), 0L)))
                 .toList();
+
+        String nextCursor = events.size() == size
+                ? EventCursor.after(events.get(events.size() - 1), EventCursor.Kind.ID).encode()
+                : null;
+
+        return new CursorPage<>(result, nextCursor);
     }
 
     /**
@@ -185,10 +195,11 @@ public class AdminEventServiceImpl implements AdminEventService {
         }
 
         event = eventRepository.save(event);
+        searchCache.evict(event);
+        eventCache.evict(eventId);
 
-        long confirmed = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
         long views = statisticsService.getViews(eventId);
 
-        return eventMapper.toFullDto(event, confirmed, views);
+        return eventMapper.toFullDto(event, views);
     }
 }
\ No newline at end of file
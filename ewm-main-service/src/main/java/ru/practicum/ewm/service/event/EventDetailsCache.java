@@ -0,0 +1,72 @@
+package ru.practicum.ewm.service.event;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.dto.event.EventFullDto;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for GET /events/{id}.
+ * Holds the assembled EventFullDto of published events without its counters,
+ * and the stats-service views per event for a short time. Concurrent misses
+ * for the same event wait for one load instead of each hitting the database.
+ */
+@Slf4j
+@Component
+public class EventDetailsCache {
+
+    private final Cache<Long, EventFullDto> events;
+    private final Cache<Long, Long> views;
+
+    public EventDetailsCache(MeterRegistry meterRegistry,
+                             @Value("${ewm.event-cache.max-size:10000}") long maxSize,
+                             @Value("${ewm.event-cache.ttl-seconds:600}") long ttlSeconds,
+                             @Value("${ewm.event-cache.views-ttl-ms:1000}") long viewsTtlMs) {
+        this.events = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.views = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(viewsTtlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, events, "publicEventDetails");
+        CaffeineCacheMetrics.monitor(meterRegistry, views, "publicEventViews");
+    }
+
+    EventFullDto get(Long eventId, Function<Long, EventFullDto> loader) {
+        return events.get(eventId, loader);
+    }
+
+    long getViews(Long eventId, Function<Long, Long> loader) {
+        return views.get(eventId, loader);
+    }
+
+    /**
+     * Drops the cached event. Inside a transaction this happens after commit.
+     */
+    public void evict(Long eventId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    events.invalidate(eventId);
+                }
+            });
+        } else {
+            events.invalidate(eventId);
+        }
+        log.debug("Event cache: event {} evicted", eventId);
+    }
+}
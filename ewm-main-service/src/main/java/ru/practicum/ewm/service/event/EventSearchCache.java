@@ -0,0 +1,97 @@
+package ru.practicum.ewm.service.event;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.common.util.CursorPage;
+import ru.practicum.ewm.constants.EventState;
+import ru.practicum.ewm.dto.event.EventShortDto;
+import ru.practicum.ewm.model.Event;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of public event search pages, keyed by the normalized filter.
+ * Entries expire after a short TTL; changes of an event evict the pages that
+ * contain it or whose filter it may now match. Views inside cached pages are
+ * as fresh as the TTL.
+ */
+@Slf4j
+@Component
+public class EventSearchCache {
+
+    private static final String CACHE_NAME = "publicEventSearch";
+
+    private final Cache<EventSearchKey, CursorPage<EventShortDto>> cache;
+
+    public EventSearchCache(MeterRegistry meterRegistry,
+                            @Value("${ewm.search-cache.max-size:1000}") long maxSize,
+                            @Value("${ewm.search-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    CursorPage<EventShortDto> get(EventSearchKey key,
+                                  Function<EventSearchKey, CursorPage<EventShortDto>> loader) {
+        return cache.get(key, loader);
+    }
+
+    /**
+     * Evicts cached pages affected by a change of the event. Inside a transaction
+     * the eviction runs after commit, so a concurrent search cannot re-cache the old state.
+     * May be called before the change is flushed: the event state is captured right away.
+     */
+    public void evict(Event event) {
+        EventSnapshot snapshot = new EventSnapshot(
+                event.getId(),
+                event.getCategory().getId(),
+                event.getPaid(),
+                event.getEventDate(),
+                event.getState()
+        );
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(snapshot);
+                }
+            });
+        } else {
+            evict(snapshot);
+        }
+    }
+
+    private void evict(EventSnapshot event) {
+        long before = cache.estimatedSize();
+
+        cache.asMap().entrySet().removeIf(entry ->
+                entry.getKey().mayMatch(event)
+                        || entry.getValue().getItems().stream()
+                        .anyMatch(dto -> dto.getId().equals(event.getId())));
+
+        log.debug("Search cache: event {} changed, {} pages evicted",
+                event.getId(), before - cache.estimatedSize());
+    }
+
+    @lombok.Value
+    static class EventSnapshot {
+        Long id;
+        Long categoryId;
+        Boolean paid;
+        LocalDateTime eventDate;
+        EventState state;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.ewm.service.event;
+
+import lombok.Value;
+import ru.practicum.ewm.constants.EventState;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalized filter of a public event search, used as the result cache key.
+ * Text is trimmed and lower-cased (the search ignores case), categories are sorted
+ * and deduplicated. A null rangeStart means "from now".
+ */
+@Value
+class EventSearchKey {
+
+    String text;
+    List<Long> categories;
+    Boolean paid;
+    LocalDateTime rangeStart;
+    LocalDateTime rangeEnd;
+    boolean onlyAvailable;
+    String sort;
+    String cursor;
+    int from;
+    int size;
+
+    static EventSearchKey of(String text,
+                             List<Long> categories,
+                             Boolean paid,
+                             LocalDateTime rangeStart,
+                             LocalDateTime rangeEnd,
+                             Boolean onlyAvailable,
+                             String sort,
+                             String cursor,
+                             int from,
+                             int size) {
+        return new EventSearchKey(
+                (text == null || text.isBlank()) ? null : text.trim().toLowerCase(Locale.ROOT),
+                categories == null ? null : categories.stream().distinct().sorted().toList(),
+                paid,
+                rangeStart,
+                rangeEnd,
+                Boolean.TRUE.equals(onlyAvailable),
+                sort,
+                (cursor == null || cursor.isBlank()) ? null : cursor,
+                from,
+                size
+        );
+    }
+
+    /**
+     * Whether an event with the given state could be part of this search result.
+     * Text is not evaluated and is assumed to match, so the answer errs on the side of true.
+     */
+    boolean mayMatch(EventSearchCache.EventSnapshot event) {
+        if (event.getState() != EventState.PUBLISHED) {
+            return false;
+        }
+        if (categories != null && !categories.contains(event.getCategoryId())) {
+            return false;
+        }
+        if (paid != null && !paid.equals(event.getPaid())) {
+            return false;
+        }
+        LocalDateTime start = rangeStart != null ? rangeStart : LocalDateTime.now();
+        if (event.getEventDate().isBefore(start)) {
+            return false;
+        }
+        return rangeEnd == null || !event.getEventDate().isAfter(rangeEnd);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.ewm.service.event;
 
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.dto.event.*;
 
 import java.util.List;
@@ -8,7 +9,7 @@ public interface PrivateEventService {
 
     EventFullDto createEvent(Long userId, NewEventDto dto);
 
-    List<EventShortDto> getUserEvents(Long userId, int from, int size);
+    CursorPage<EventShortDto> getUserEvents(Long userId, String cursor, int from, int size);
 
     EventFullDto getUserEvent(Long userId, Long eventId);
 
@@ -2,17 +2,19 @@ package ru.practicum.ewm.service.event;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.common.exceptions.BadRequestException;
 import ru.practicum.ewm.common.exceptions.ConflictException;
 import ru.practicum.ewm.common.exceptions.NotFoundException;
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.common.util.DateTimeUtils;
+import ru.practicum.ewm.common.util.EventCursor;
 import ru.practicum.ewm.common.util.PaginationUtils;
 import ru.practicum.ewm.constants.EventState;
-import ru.practicum.ewm.constants.RequestStatus;
 import ru.practicum.ewm.dto.event.EventFullDto;
+import ru.practicum.ewm.dto.event.EventListItemDto;
 import ru.practicum.ewm.dto.event.EventShortDto;
 import ru.practicum.ewm.dto.event.NewEventDto;
 import ru.practicum.ewm.dto.event.UpdateEventUserRequest;
@@ -27,6 +29,7 @@ import ru.practicum.ewm.storage.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -37,7 +40,6 @@ public class PrivateEventServiceImpl implements PrivateEventService {
     private final UserRepository userRepository;
     private final CategoryRepository categoryRepository;
     private final LocationRepository locationRepository;
-    private final ParticipationRequestRepository requestRepository;
 
     private final EventMapper eventMapper;
     private final LocationMapper locationMapper;
@@ -77,25 +79,37 @@ public class PrivateEventServiceImpl implements PrivateEventService {
         event = eventRepository.save(event);
 
         log.info("Event {} successfully created", event.getId());
-        return eventMapper.toFullDto(event, 0L, 0L);
+        return eventMapper.toFullDto(event, 0L);
     }
 
     /**
-     * Returns all events created by the specified user.
+     * Returns events created by the specified user, ordered by id.
+     * When a cursor is given, reading continues after it and from is ignored.
      */
     @Override
-    public List<EventShortDto> getUserEvents(Long userId, int from, int size) {
-        log.debug("PRIVATE: getUserEvents userId={}, from={}, size={}", userId, from, size);
+    public CursorPage<EventShortDto> getUserEvents(Long userId, String cursor, int from, int size) {
+        log.debug("PRIVATE: getUserEvents userId={}, cursor={}, from={}, size={}", userId, cursor, from, size);
 
-        Pageable pageable = PaginationUtils.toPageable(from, size);
+        EventCursor after = EventCursor.decode(cursor, EventCursor.Kind.ID);
 
-        return eventRepository.findAllByInitiatorId(userId, pageable).stream()
-                .map(e -> {
-                    long confirmed = requestRepository.countByEventIdAndStatus(e.getId(), RequestStatus.CONFIRMED);
-                    long views = statisticsService.getViews(e.getId());
-                    return eventMapper.toShortDto(e, confirmed, views);
-                })
+        List<EventListItemDto> events = eventRepository.findListItemsByInitiatorId(
+                userId,
+                after == null ? null : after.getId(),
+                PaginationUtils.toPageable(after == null ? from : 0, size, Sort.by("id"))
+        );
+
+        Map<Long, Long> views = statisticsService.getViews(
+                events.stream().map(EventListItemDto::getId).toList());
+
+        List<EventShortDto> result = events.stream()
+                .map(e -> eventMapper.toShortDto(e, views.getOrDefault(e.getId(), 0L)))
                 .toList();
+
+        String nextCursor = events.size() == size
+                ? EventCursor.after(events.get(events.size() - 1), EventCursor.Kind.ID).encode()
+                : null;
+
+        return new CursorPage<>(result, nextCursor);
     }
 
     /**
@@ -107,10 +121,9 @@ public class PrivateEventServiceImpl implements PrivateEventService {
 
         Event event = getOwnedEvent(userId, eventId);
 
-        long confirmed = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
         long views = statisticsService.getViews(eventId);
 
-        return eventMapper.toFullDto(event, confirmed, views);
+        return eventMapper.toFullDto(event, views);
     }
 
     /**
@@ -152,11 +165,10 @@ public class PrivateEventServiceImpl implements PrivateEventService {
 
         event = eventRepository.save(event);
 
-        long confirmed = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
         long views = statisticsService.getViews(eventId);
 
         log.info("Event {} updated successfully", eventId);
-        return eventMapper.toFullDto(event, confirmed, views);
+        return eventMapper.toFullDto(event, views);
     }
 
     /**
@@ -1,5 +1,6 @@
 package ru.practicum.ewm.service.event;
 
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.dto.event.EventFullDto;
 import ru.practicum.ewm.dto.event.EventShortDto;
 
@@ -7,15 +8,16 @@ import java.util.List;
 
 public interface PublicEventService {
 
-    List<EventShortDto> getEvents(String text,
-                                  List<Long> categories,
-                                  Boolean paid,
-                                  String rangeStart,
-                                  String rangeEnd,
-                                  Boolean onlyAvailable,
-                                  String sort,
-                                  int from,
-                                  int size
+    CursorPage<EventShortDto> getEvents(String text,
+                                        List<Long> categories,
+                                        Boolean paid,
+                                        String rangeStart,
+                                        String rangeEnd,
+                                        Boolean onlyAvailable,
+                                        String sort,
+                                        String cursor,
+                                        int from,
+                                        int size
     );
 
     EventFullDto getEvent(Long id);
@@ -7,113 +7,156 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.common.exceptions.BadRequestException;
 import ru.practicum.ewm.common.exceptions.NotFoundException;
+import ru.practicum.ewm.common.util.CursorPage;
 import ru.practicum.ewm.common.util.DateTimeUtils;
+import ru.practicum.ewm.common.util.EventCursor;
 import ru.practicum.ewm.common.util.PaginationUtils;
 import ru.practicum.ewm.constants.EventState;
-import ru.practicum.ewm.constants.RequestStatus;
 import ru.practicum.ewm.dto.event.EventFullDto;
+import ru.practicum.ewm.dto.event.EventListItemDto;
 import ru.practicum.ewm.dto.event.EventShortDto;
 import ru.practicum.ewm.mapper.EventMapper;
 import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.service.statistics.StatisticsService;
 import ru.practicum.ewm.storage.EventRepository;
-import ru.practicum.ewm.storage.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PublicEventServiceImpl implements PublicEventService {
 
     private final EventRepository eventRepository;
-    private final ParticipationRequestRepository requestRepository;
     private final EventMapper eventMapper;
     private final StatisticsService statisticsService;
+    private final EventSearchCache searchCache;
+    private final EventDetailsCache eventCache;
 
     /**
      * Returns public events filtered by text, categories, date range, payment,
      * availability and sorted by views/eventDate. Only PUBLISHED events.
+     * When a cursor is given, reading continues after it and from is ignored.
+     * VIEWS is the locally synchronized views column, refreshed every minute, so paging by it
+     * may skip or repeat an event whose views changed between pages; eventDate pages are stable.
+     * Results are served from EventSearchCache when the same filter was searched recently.
      */
     @Override
-    public List<EventShortDto> getEvents(String text,
-                                         List<Long> categories,
-                                         Boolean paid,
-                                         String rangeStart,
-                                         String rangeEnd,
-                                         Boolean onlyAvailable,
-                                         String sort,
-                                         int from,
-                                         int size) {
+    public CursorPage<EventShortDto> getEvents(String text,
+                                               List<Long> categories,
+                                               Boolean paid,
+                                               String rangeStart,
+                                               String rangeEnd,
+                                               Boolean onlyAvailable,
+                                               String sort,
+                                               String cursor,
+                                               int from,
+                                               int size) {
         log.info("PUBLIC: Searching events with filters text={}, categories={}, paid={}, rangeStart={}, rangeEnd={}",
                 text, categories, paid, rangeStart, rangeEnd);
 
         LocalDateTime start = (rangeStart == null)
-                ? LocalDateTime.now()
+                ? null
                 : LocalDateTime.parse(rangeStart, DateTimeUtils.FORMATTER);
 
         LocalDateTime end = (rangeEnd == null)
-                ? start.plusYears(100)
+                ? null
                 : LocalDateTime.parse(rangeEnd, DateTimeUtils.FORMATTER);
 
-        if (end.isBefore(start)) {
+        if (end != null && end.isBefore(start != null ? start : LocalDateTime.now())) {
             throw new BadRequestException("rangeEnd cannot be before rangeStart");
         }
 
-        Pageable pageable = PaginationUtils.toPageable(from, size);
+        EventSearchKey key = EventSearchKey.of(
+                text, categories, paid, start, end, onlyAvailable, sort, cursor, from, size);
+
+        return searchCache.get(key, this::search);
+    }
 
-        List<Event> events = eventRepository.searchPublicEvents(
-                categories, paid, start, end, pageable
-        );
+    /**
+     * Runs the public search for a normalized filter; called on a search cache miss.
+     */
+    private CursorPage<EventShortDto> search(EventSearchKey key) {
+        String searchText = key.getText();
+        String sort = key.getSort();
+        int size = key.getSize();
 
-        if (text != null && !text.isBlank()) {
-            String t = text.toLowerCase();
-            events = events.stream()
-                    .filter(e ->
-                            e.getAnnotation().toLowerCase().contains(t) ||
-                                    e.getDescription().toLowerCase().contains(t)
-                    )
-                    .toList();
+        LocalDateTime start = key.getRangeStart() != null ? key.getRangeStart() : LocalDateTime.now();
+        LocalDateTime end = key.getRangeEnd() != null ? key.getRangeEnd() : start.plusYears(100);
+
+        // without explicit sort a text search is ordered by relevance
+        boolean byRelevance = searchText != null && sort == null;
+
+        // relevance order has no stable key to seek on
+        EventCursor.Kind cursorKind = byRelevance ? null
+                : "VIEWS".equals(sort) ? EventCursor.Kind.VIEWS : EventCursor.Kind.EVENT_DATE;
+
+        if (cursorKind == null && key.getCursor() != null) {
+            throw new BadRequestException("Cursor is not supported for relevance ordering");
         }
 
-        if (Boolean.TRUE.equals(onlyAvailable)) {
-            events = events.stream()
-                    .filter(e -> e.getParticipantLimit() == 0 ||
-                            requestRepository.countByEventIdAndStatus(
-                                    e.getId(), RequestStatus.CONFIRMED
-                            ) < e.getParticipantLimit())
-                    .toList();
+        EventCursor after = cursorKind == null ? null : EventCursor.decode(key.getCursor(), cursorKind);
+
+        Pageable pageable = PaginationUtils.toPageable(after == null ? key.getFrom() : 0, size);
+
+        List<EventListItemDto> events;
+        if (cursorKind == null) {
+            events = eventRepository.searchPublicEventsByRelevance(
+                    searchText, key.getCategories(), key.getPaid(), key.isOnlyAvailable(), start, end, pageable);
+        } else if (cursorKind == EventCursor.Kind.VIEWS) {
+            events = eventRepository.searchPublicEventsByViews(
+                    searchText, key.getCategories(), key.getPaid(), key.isOnlyAvailable(), start, end,
+                    after == null ? null : after.getViews(),
+                    after == null ? null : after.getId(),
+                    pageable);
+        } else {
+            events = eventRepository.searchPublicEventsByDate(
+                    searchText, key.getCategories(), key.getPaid(), key.isOnlyAvailable(), start, end,
+                    after == null ? null : after.getEventDate(),
+                    after == null ? null : after.getId(),
+                    pageable);
         }
 
+        Map<Long, Long> views = statisticsService.getViews(
+                events.stream().map(EventListItemDto::getId).toList());
+
         List<EventShortDto> result = events.stream()
-                .map(e -> {
-                    long confirmed = requestRepository.countByEventIdAndStatus(
-                            e.getId(), RequestStatus.CONFIRMED);
-                    long views = statisticsService.getViews(e.getId());
-                    return eventMapper.toShortDto(e, confirmed, views);
-                })
+                .map(e -> eventMapper.toShortDto(e, views.getOrDefault(e.getId(), 0L)))
                 .toList();
 
-        if ("VIEWS".equals(sort)) {
-            result = result.stream()
-                    .sorted(Comparator.comparingLong(EventShortDto::getViews).reversed())
-                    .toList();
-        } else if ("EVENT_DATE".equals(sort)) {
-            result = result.stream()
-                    .sorted(Comparator.comparing(EventShortDto::getEventDate))
-                    .toList();
-        }
+        String nextCursor = (cursorKind != null && events.size() == size)
+                ? EventCursor.after(events.get(events.size() - 1), cursorKind).encode()
+                : null;
 
-        return result;
+        return new CursorPage<>(result, nextCursor);
     }
 
     /**
      * Returns a full public event. Only PUBLISHED events are accessible.
+     * The event itself comes from EventDetailsCache; confirmed requests are read
+     * by primary key and views come from the short-lived views cache.
      */
     @Override
     public EventFullDto getEvent(Long id) {
 
+        EventFullDto base = eventCache.get(id, this::loadPublishedEvent);
+
+        long confirmed = eventRepository.findConfirmedRequestsById(id)
+                .orElse(base.getConfirmedRequests());
+        long views = eventCache.getViews(id, statisticsService::getViews);
+
+        return base.toBuilder()
+                .confirmedRequests(confirmed)
+                .views(views)
+                .build();
+    }
+
+    /**
+     * Loads a published event on an event cache miss.
+     */
+    private EventFullDto loadPublishedEvent(Long id) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Event with id=" + id + " was not found"));
 
@@ -121,10 +164,6 @@ public class PublicEventServiceImpl implements PublicEventService {
             throw new NotFoundException("Event with id=" + id + " was not found");
         }
 
-        long confirmed = requestRepository.countByEventIdAndStatus(
-                id, RequestStatus.CONFIRMED);
-        long views = statisticsService.getViews(id);
-
-        return eventMapper.toFullDto(event, confirmed, views);
+        return eventMapper.toFullDto(event, 0L);
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package ru.practicum.ewm.service.request;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.dto.request.EventRequestCountDto;
+import ru.practicum.ewm.storage.EventRepository;
+import ru.practicum.ewm.storage.ParticipationRequestRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Periodically compares the denormalized Event.confirmedRequests counters
+ * with the requests table, reports drift and repairs drifted events.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConfirmedRequestsReconciler {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final EventRepository eventRepository;
+    private final ParticipationRequestRepository requestRepository;
+
+    @Scheduled(
+            initialDelayString = "${ewm.confirmed-requests.reconcile-initial-delay-ms:60000}",
+            fixedDelayString = "${ewm.confirmed-requests.reconcile-interval-ms:3600000}"
+    )
+    @Transactional
+    public void reconcile() {
+        log.debug("Reconciling confirmed requests counters");
+
+        long checked = 0;
+        List<Long> drifted = new ArrayList<>();
+        long afterId = 0;
+
+        List<EventRequestCountDto> stored;
+        do {
+            stored = eventRepository.findConfirmedRequestsAfter(afterId, PageRequest.of(0, BATCH_SIZE));
+            if (stored.isEmpty()) {
+                break;
+            }
+
+            Map<Long, Long> actual = requestRepository.countConfirmedByEventIds(
+                    stored.stream().map(EventRequestCountDto::getEventId).toList());
+
+            for (EventRequestCountDto row : stored) {
+                long expected = actual.getOrDefault(row.getEventId(), 0L);
+                if (row.getCount() != expected) {
+                    log.warn("Confirmed requests drift for event {}: stored={}, actual={}",
+                            row.getEventId(), row.getCount(), expected);
+                    drifted.add(row.getEventId());
+                }
+            }
+
+            checked += stored.size();
+            afterId = stored.get(stored.size() - 1).getEventId();
+        } while (stored.size() == BATCH_SIZE);
+
+        if (!drifted.isEmpty()) {
+            eventRepository.recountConfirmedRequests(drifted);
+            log.warn("Confirmed requests counters repaired for {} of {} events", drifted.size(), checked);
+        } else {
+            log.info("Confirmed requests counters are consistent ({} events checked)", checked);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import ru.practicum.ewm.dto.request.ParticipationRequestDto;
 import ru.practicum.ewm.mapper.RequestMapper;
 import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.model.ParticipationRequest;
+import ru.practicum.ewm.service.event.EventSearchCache;
 import ru.practicum.ewm.storage.EventRepository;
 import ru.practicum.ewm.storage.ParticipationRequestRepository;
 
@@ -27,6 +28,7 @@ public class EventParticipantsServiceImpl implements EventParticipantsService {
     private final ParticipationRequestRepository requestRepository;
     private final EventRepository eventRepository;
     private final RequestMapper requestMapper;
+    private final EventSearchCache searchCache;
 
     /**
      * Returns all participation requests for a specific event. Only the event initiator may access this data.
@@ -88,7 +90,8 @@ public class EventParticipantsServiceImpl implements EventParticipantsService {
         List<ParticipationRequestDto> confirmed = new ArrayList<>();
         List<ParticipationRequestDto> rejected = new ArrayList<>();
 
-        long confirmedCount = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
+        long confirmedCount = event.getConfirmedRequests();
+        long newlyConfirmed = 0;
         int limit = event.getParticipantLimit();
 
         for (ParticipationRequest r : requests) {
@@ -110,6 +113,7 @@ public class EventParticipantsServiceImpl implements EventParticipantsService {
                 r.setStatus(RequestStatus.CONFIRMED);
                 confirmed.add(requestMapper.toDto(requestRepository.save(r)));
                 confirmedCount++;
+                newlyConfirmed++;
 
                 if (limit != 0 && confirmedCount == limit) {
 
@@ -131,6 +135,14 @@ public class EventParticipantsServiceImpl implements EventParticipantsService {
             }
         }
 
+        // the counter may have moved since the event was read, so the limit is checked again atomically
+        if (newlyConfirmed > 0) {
+            if (eventRepository.incrementConfirmedRequests(eventId, newlyConfirmed) == 0) {
+                throw new ConflictException("Participant limit reached");
+            }
+            searchCache.evict(event);
+        }
+
         log.info("Status update finished for event {}: confirmed={}, rejected={}",
                 eventId, confirmed.size(), rejected.size());
 
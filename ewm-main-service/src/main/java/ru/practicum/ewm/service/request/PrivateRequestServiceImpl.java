@@ -13,6 +13,7 @@ import ru.practicum.ewm.mapper.RequestMapper;
 import ru.practicum.ewm.model.Event;
 import ru.practicum.ewm.model.ParticipationRequest;
 import ru.practicum.ewm.model.User;
+import ru.practicum.ewm.service.event.EventSearchCache;
 import ru.practicum.ewm.storage.EventRepository;
 import ru.practicum.ewm.storage.ParticipationRequestRepository;
 import ru.practicum.ewm.storage.UserRepository;
@@ -29,6 +30,7 @@ public class PrivateRequestServiceImpl implements PrivateRequestService {
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
     private final RequestMapper requestMapper;
+    private final EventSearchCache searchCache;
 
     /**
      * Returns all participation requests created by the specified user.
@@ -82,7 +84,7 @@ public class PrivateRequestServiceImpl implements PrivateRequestService {
             throw new ConflictException("Request already exists");
         }
 
-        long confirmed = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
+        long confirmed = event.getConfirmedRequests();
         log.debug("Confirmed requests for event {}: {}", eventId, confirmed);
 
         if (event.getParticipantLimit() > 0 && confirmed >= event.getParticipantLimit()) {
@@ -95,6 +97,13 @@ public class PrivateRequestServiceImpl implements PrivateRequestService {
 
         log.debug("Determined request status: {}", status);
 
+        if (status == RequestStatus.CONFIRMED) {
+            if (eventRepository.incrementConfirmedRequests(eventId, 1) == 0) {
+                throw new ConflictException("Participant limit reached");
+            }
+            searchCache.evict(event);
+        }
+
         ParticipationRequest request = ParticipationRequest.builder()
                 .requester(user)
                 .event(event)
@@ -110,8 +119,10 @@ public class PrivateRequestServiceImpl implements PrivateRequestService {
 
     /**
      * Cancels the request created by the user.
+     * A confirmed request frees its slot in the event.
      */
     @Override
+    @Transactional
     public ParticipationRequestDto cancelRequest(Long userId, Long requestId) {
         log.info("Cancelling request: userId={}, requestId={}", userId, requestId);
 
@@ -126,6 +137,11 @@ public class PrivateRequestServiceImpl implements PrivateRequestService {
             throw new ConflictException("User cannot cancel others' requests");
         }
 
+        if (request.getStatus() == RequestStatus.CONFIRMED) {
+            eventRepository.decrementConfirmedRequests(request.getEvent().getId(), 1);
+            searchCache.evict(request.getEvent());
+        }
+
         request.setStatus(RequestStatus.CANCELED);
         ParticipationRequest saved = requestRepository.save(request);
 
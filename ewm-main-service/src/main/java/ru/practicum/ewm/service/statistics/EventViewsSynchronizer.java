@@ -0,0 +1,70 @@
+package ru.practicum.ewm.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dto.event.EventViewsDto;
+import ru.practicum.ewm.storage.EventRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Copies views of published events from the stats service into Event.views,
+ * which public search uses for sort=VIEWS. Batches whose stats call fails are
+ * skipped rather than reset to 0.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventViewsSynchronizer {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final EventRepository eventRepository;
+    private final StatisticsService statisticsService;
+
+    @Scheduled(fixedDelayString = "${ewm.views.sync-interval-ms:60000}")
+    public void synchronize() {
+        long checked = 0;
+        long updated = 0;
+        long skipped = 0;
+        long afterId = 0;
+
+        List<EventViewsDto> stored;
+        do {
+            stored = eventRepository.findPublishedViewsAfter(afterId, PageRequest.of(0, BATCH_SIZE));
+            if (stored.isEmpty()) {
+                break;
+            }
+
+            Optional<Map<Long, Long>> actual = statisticsService.findViews(
+                    stored.stream().map(EventViewsDto::getEventId).toList());
+
+            if (actual.isEmpty()) {
+                // a failed stats call is not "no views": keep the stored values until the next run
+                skipped += stored.size();
+            } else {
+                for (EventViewsDto row : stored) {
+                    long views = actual.get().getOrDefault(row.getEventId(), 0L);
+                    if (row.getViews() != views) {
+                        eventRepository.updateViews(row.getEventId(), views);
+                        updated++;
+                    }
+                }
+                checked += stored.size();
+            }
+
+            afterId = stored.get(stored.size() - 1).getEventId();
+        } while (stored.size() == BATCH_SIZE);
+
+        if (skipped > 0) {
+            log.warn("Views of {} published events were not synchronized: the stats service did not answer",
+                    skipped);
+        }
+        log.debug("Views synchronized: {} of {} published events updated", updated, checked);
+    }
+}
@@ -2,9 +2,21 @@ package ru.practicum.ewm.service.statistics;
 
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
 public interface StatisticsService {
 
     void saveHit(HttpServletRequest request);
 
     long getViews(Long eventId);
+
+    Map<Long, Long> getViews(Collection<Long> eventIds);
+
+    /**
+     * Like {@link #getViews(Collection)}, but empty when the stats service could not answer,
+     * so callers can tell a failed lookup from events without views.
+     */
+    Optional<Map<Long, Long>> findViews(Collection<Long> eventIds);
 }
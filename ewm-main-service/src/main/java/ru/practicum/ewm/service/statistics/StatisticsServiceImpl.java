@@ -2,6 +2,7 @@ package ru.practicum.ewm.service.statistics;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import ru.practicum.stats.client.StatsServiceClient;
 import ru.practicum.stats.dto.EndpointHitDto;
@@ -9,12 +10,27 @@ import ru.practicum.stats.dto.ViewStatsDto;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
 
+    private static final String EVENT_URI_PREFIX = "/events/";
+
+    /**
+     * Upper bound of uris sent in one GET /stats call, keeps the query string
+     * well below the default 8 KB request line limit of the stats server.
+     */
+    private static final int MAX_URIS_PER_REQUEST = 100;
+
     private final StatsServiceClient statsClient;
 
     private static final DateTimeFormatter FORMATTER =
@@ -30,23 +46,85 @@ public class StatisticsServiceImpl implements StatisticsService {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        statsClient.sendHit(dto);
+        statsClient.recordHit(dto);
     }
 
     @Override
     public long getViews(Long eventId) {
+        return getViews(List.of(eventId)).getOrDefault(eventId, 0L);
+    }
+
+    /**
+     * Returns views for every given event id using a single stats request
+     * (split only when the id list is too long for one query string).
+     * Events without recorded hits, or whose stats request failed, are mapped to 0.
+     */
+    @Override
+    public Map<Long, Long> getViews(Collection<Long> eventIds) {
+        Map<Long, Long> views = new HashMap<>();
+        if (eventIds != null && !eventIds.isEmpty()) {
+            loadViews(eventIds, views);
+        }
+        return views;
+    }
+
+    @Override
+    public Optional<Map<Long, Long>> findViews(Collection<Long> eventIds) {
+        Map<Long, Long> views = new HashMap<>();
+        if (eventIds == null || eventIds.isEmpty()) {
+            return Optional.of(views);
+        }
+        return loadViews(eventIds, views) ? Optional.of(views) : Optional.empty();
+    }
+
+    /**
+     * Puts the views of the given events into the map, 0 for events without hits.
+     *
+     * @return false if any stats request failed; the events of that request are left at 0
+     */
+    private boolean loadViews(Collection<Long> eventIds, Map<Long, Long> views) {
+        List<String> uris = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(eventIds)) {
+            views.put(id, 0L);
+            uris.add(EVENT_URI_PREFIX + id);
+        }
 
         String start = "2000-01-01 00:00:00";
-        String end = LocalDateTime.now().format(FORMATTER);
+        // hits are never newer than now, so the end is rounded up to a whole second:
+        // the range still means "all time", and the stats server answers it from its counters
+        String end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1).format(FORMATTER);
+
+        boolean complete = true;
+        for (int i = 0; i < uris.size(); i += MAX_URIS_PER_REQUEST) {
+            List<String> chunk = uris.subList(i, Math.min(i + MAX_URIS_PER_REQUEST, uris.size()));
+
+            ResponseEntity<List<ViewStatsDto>> response = statsClient.getStats(start, end, chunk, true);
+            List<ViewStatsDto> stats = response.getBody();
 
-        List<ViewStatsDto> stats = statsClient
-                .getStats(start, end, List.of("/events/" + eventId), true)
-                .getBody();
+            if (!response.getStatusCode().is2xxSuccessful() || stats == null) {
+                complete = false;
+                continue;
+            }
 
-        if (stats == null || stats.isEmpty()) {
-            return 0;
+            for (ViewStatsDto stat : stats) {
+                Long eventId = parseEventId(stat.getUri());
+                if (eventId != null && views.containsKey(eventId)) {
+                    views.put(eventId, stat.getHits());
+                }
+            }
         }
 
-        return stats.get(0).getHits();
+        return complete;
+    }
+
+    private Long parseEventId(String uri) {
+        if (uri == null || !uri.startsWith(EVENT_URI_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(uri.substring(EVENT_URI_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,34 +1,115 @@
 package ru.practicum.ewm.storage;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.constants.EventState;
+import ru.practicum.ewm.dto.event.EventListItemDto;
+import ru.practicum.ewm.dto.event.EventViewsDto;
+import ru.practicum.ewm.dto.request.EventRequestCountDto;
 import ru.practicum.ewm.model.Event;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface EventRepository extends JpaRepository<Event, Long> {
 
+    // событие вместе с категорией, инициатором и локацией одним запросом
+    @Override
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
+    Optional<Event> findById(Long id);
+
     // события пользователя
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
     List<Event> findAllByInitiatorId(Long initiatorId, Pageable pageable);
 
+    // краткий список событий пользователя без description; afterId — курсор по id
     @Query("""
-            SELECT e FROM Event e
+            SELECT new ru.practicum.ewm.dto.event.EventListItemDto(
+                e.id, e.annotation, e.title, e.eventDate, e.paid, e.confirmedRequests, e.views,
+                c.id, c.name, u.id, u.name)
+            FROM Event e
+            JOIN e.category c
+            JOIN e.initiator u
+            WHERE u.id = :initiatorId
+              AND (:afterId IS NULL OR e.id > :afterId)
+            """)
+    List<EventListItemDto> findListItemsByInitiatorId(Long initiatorId, Long afterId, Pageable pageable);
+
+    // --- публичный поиск (/events) ---
+    // функции event_text_* регистрируются в EventTextSearchFunctions.
+    // общие для всех сортировок фильтры; у каждой сортировки свой запрос,
+    // чтобы курсор был сравнением строк по индексу (см. EventSortIndexInitializer)
+
+    String PUBLIC_SEARCH_SELECT = """
+            SELECT new ru.practicum.ewm.dto.event.EventListItemDto(
+                e.id, e.annotation, e.title, e.eventDate, e.paid, e.confirmedRequests, e.views,
+                c.id, c.name, u.id, u.name)
+            FROM Event e
+            JOIN e.category c
+            JOIN e.initiator u
             WHERE e.state = ru.practicum.ewm.constants.EventState.PUBLISHED
-              AND (:categories IS NULL OR e.category.id IN :categories)
+              AND (:text IS NULL OR event_text_match(e.annotation, e.description, :text) = true)
+              AND (:categories IS NULL OR c.id IN :categories)
               AND (:paid IS NULL OR e.paid = :paid)
-              AND (e.eventDate >= COALESCE(:rangeStart, e.eventDate))
-              AND (e.eventDate <= COALESCE(:rangeEnd, e.eventDate))
+              AND (:onlyAvailable = false
+                   OR e.participantLimit = 0
+                   OR e.confirmedRequests < e.participantLimit)
+              AND e.eventDate >= :rangeStart
+              AND e.eventDate <= :rangeEnd
+            """;
+
+    // по релевантности текста; устойчивого ключа нет, поэтому только from/size
+    @Query(PUBLIC_SEARCH_SELECT + """
+            ORDER BY event_text_rank(e.annotation, e.description, :text) DESC, e.id
+            """)
+    List<EventListItemDto> searchPublicEventsByRelevance(String text,
+                                                         List<Long> categories,
+                                                         Boolean paid,
+                                                         boolean onlyAvailable,
+                                                         LocalDateTime rangeStart,
+                                                         LocalDateTime rangeEnd,
+                                                         Pageable pageable);
+
+    // по дате события; курсор — (eventDate, id) последнего события предыдущей страницы
+    @Query(PUBLIC_SEARCH_SELECT + """
+              AND (:cursorId IS NULL OR (e.eventDate, e.id) > (:cursorDate, :cursorId))
+            ORDER BY e.eventDate, e.id
             """)
-    List<Event> searchPublicEvents(List<Long> categories,
-                                   Boolean paid,
-                                   LocalDateTime rangeStart,
-                                   LocalDateTime rangeEnd,
-                                   Pageable pageable);
+    List<EventListItemDto> searchPublicEventsByDate(String text,
+                                                    List<Long> categories,
+                                                    Boolean paid,
+                                                    boolean onlyAvailable,
+                                                    LocalDateTime rangeStart,
+                                                    LocalDateTime rangeEnd,
+                                                    LocalDateTime cursorDate,
+                                                    Long cursorId,
+                                                    Pageable pageable);
+
+    // по просмотрам, начиная с самых популярных; курсор — (views, id) последнего события.
+    // views переписывает EventViewsSynchronizer раз в минуту, поэтому между страницами
+    // событие, чьи просмотры выросли, может быть пропущено или показано повторно
+    @Query(PUBLIC_SEARCH_SELECT + """
+              AND (:cursorId IS NULL OR (e.views, e.id) < (:cursorViews, :cursorId))
+            ORDER BY e.views DESC, e.id DESC
+            """)
+    List<EventListItemDto> searchPublicEventsByViews(String text,
+                                                     List<Long> categories,
+                                                     Boolean paid,
+                                                     boolean onlyAvailable,
+                                                     LocalDateTime rangeStart,
+                                                     LocalDateTime rangeEnd,
+                                                     Long cursorViews,
+                                                     Long cursorId,
+                                                     Pageable pageable);
 
     // --- админский поиск (/admin/events) ---
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
     @Query("""
                 SELECT e FROM Event e
                 WHERE (:users IS NULL OR e.initiator.id IN :users)
@@ -36,13 +117,79 @@ public interface EventRepository extends JpaRepository<Event, Long> {
                   AND (:categories IS NULL OR e.category.id IN :categories)
                   AND e.eventDate >= COALESCE(:rangeStart, e.eventDate)
                   AND e.eventDate <= COALESCE(:rangeEnd, e.eventDate)
+                  AND (:afterId IS NULL OR e.id > :afterId)
             """)
     List<Event> searchAdminEvents(List<Long> users,
                                   List<EventState> states,
                                   List<Long> categories,
                                   LocalDateTime rangeStart,
                                   LocalDateTime rangeEnd,
+                                  Long afterId,
                                   Pageable pageable);
 
     boolean existsByCategoryId(Long categoryId);
-}
\ No newline at end of file
+
+    // --- счётчик подтверждённых заявок ---
+
+    /**
+     * Atomically adds confirmed requests unless that would exceed the participant limit.
+     * Returns 0 when the limit does not allow it.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Event e
+            SET e.confirmedRequests = e.confirmedRequests + :count
+            WHERE e.id = :eventId
+              AND (e.participantLimit = 0 OR e.confirmedRequests + :count <= e.participantLimit)
+            """)
+    int incrementConfirmedRequests(Long eventId, long count);
+
+    @Modifying
+    @Query("""
+            UPDATE Event e
+            SET e.confirmedRequests = e.confirmedRequests - :count
+            WHERE e.id = :eventId
+              AND e.confirmedRequests >= :count
+            """)
+    int decrementConfirmedRequests(Long eventId, long count);
+
+    @Query("""
+            SELECT new ru.practicum.ewm.dto.request.EventRequestCountDto(e.id, e.confirmedRequests)
+            FROM Event e
+            WHERE e.id > :afterId
+            ORDER BY e.id
+            """)
+    List<EventRequestCountDto> findConfirmedRequestsAfter(Long afterId, Pageable pageable);
+
+    // пересчёт счётчика по таблице заявок
+    @Modifying
+    @Query("""
+            UPDATE Event e
+            SET e.confirmedRequests = (
+                SELECT COUNT(r) FROM ParticipationRequest r
+                WHERE r.event.id = e.id
+                  AND r.status = ru.practicum.ewm.constants.RequestStatus.CONFIRMED)
+            WHERE e.id IN :eventIds
+            """)
+    int recountConfirmedRequests(Collection<Long> eventIds);
+
+    // текущее значение счётчика по первичному ключу (для кэша GET /events/{id})
+    @Query("SELECT e.confirmedRequests FROM Event e WHERE e.id = :eventId")
+    Optional<Long> findConfirmedRequestsById(Long eventId);
+
+    // --- локальная копия просмотров ---
+
+    @Query("""
+            SELECT new ru.practicum.ewm.dto.event.EventViewsDto(e.id, e.views)
+            FROM Event e
+            WHERE e.state = ru.practicum.ewm.constants.EventState.PUBLISHED
+              AND e.id > :afterId
+            ORDER BY e.id
+            """)
+    List<EventViewsDto> findPublishedViewsAfter(Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Event e SET e.views = :views WHERE e.id = :eventId")
+    int updateViews(Long eventId, long views);
+}
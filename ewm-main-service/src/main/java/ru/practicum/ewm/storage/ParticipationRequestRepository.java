@@ -1,10 +1,15 @@
 package ru.practicum.ewm.storage;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.ewm.constants.RequestStatus;
+import ru.practicum.ewm.dto.request.EventRequestCountDto;
 import ru.practicum.ewm.model.ParticipationRequest;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface ParticipationRequestRepository
         extends JpaRepository<ParticipationRequest, Long> {
@@ -19,4 +24,29 @@ public interface ParticipationRequestRepository
 
     List<ParticipationRequest> findAllByEventIdAndStatus(Long eventId, RequestStatus status);
 
+    // количество заявок с заданным статусом сразу для набора событий
+    @Query("""
+            SELECT new ru.practicum.ewm.dto.request.EventRequestCountDto(r.event.id, COUNT(r))
+            FROM ParticipationRequest r
+            WHERE r.event.id IN :eventIds
+              AND r.status = :status
+            GROUP BY r.event.id
+            """)
+    List<EventRequestCountDto> countByEventIdsAndStatus(Collection<Long> eventIds, RequestStatus status);
+
+    /**
+     * Returns confirmed requests count per event id in one query.
+     * Events without confirmed requests are absent from the map.
+     */
+    default Map<Long, Long> countConfirmedByEventIds(Collection<Long> eventIds) {
+        Map<Long, Long> result = new HashMap<>();
+        if (eventIds == null || eventIds.isEmpty()) {
+            return result;
+        }
+
+        for (EventRequestCountDto row : countByEventIdsAndStatus(eventIds, RequestStatus.CONFIRMED)) {
+            result.put(row.getEventId(), row.getCount());
+        }
+        return result;
+    }
 }
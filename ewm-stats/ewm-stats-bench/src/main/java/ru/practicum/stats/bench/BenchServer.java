@@ -0,0 +1,61 @@
+package ru.practicum.stats.bench;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.stats.server.StatsServerApp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The stats server started in the benchmark JVM without the web layer.
+ * It runs on a fresh in-memory H2 database unless bench.datasource.url
+ * (with bench.datasource.username and bench.datasource.password) points to another one,
+ * e.g. an empty PostgreSQL database: -jvmArgsAppend -Dbench.datasource.url=jdbc:postgresql://...
+ */
+final class BenchServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchServer(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param properties extra server properties as name=value
+     */
+    static BenchServer start(String... properties) {
+        // H2 would otherwise return a cached result for a repeated query over unchanged tables
+        String url = System.getProperty("bench.datasource.url",
+                "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE");
+
+        // passed as command line arguments to take precedence over application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "spring.main.web-application-type=none",
+                "spring.datasource.url=" + url,
+                "spring.datasource.username=" + System.getProperty("bench.datasource.username", "sa"),
+                "spring.datasource.password=" + System.getProperty("bench.datasource.password", ""),
+                "spring.datasource.driver-class-name=" + (url.startsWith("jdbc:h2:")
+                        ? "org.h2.Driver" : "org.postgresql.Driver"),
+                "spring.jpa.show-sql=false",
+                "spring.jpa.properties.hibernate.format_sql=false",
+                "logging.level.root=WARN",
+                "logging.level.org.springframework.web=WARN",
+                "logging.level.ru.practicum.stats.server=WARN"));
+        args.addAll(Arrays.asList(properties));
+
+        return new BenchServer(new SpringApplicationBuilder(StatsServerApp.class)
+                .run(args.stream().map(arg -> "--" + arg).toArray(String[]::new)));
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
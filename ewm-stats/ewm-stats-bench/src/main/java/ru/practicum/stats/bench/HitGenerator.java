@@ -0,0 +1,66 @@
+package ru.practicum.stats.bench;
+
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.server.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible hits of one app: uniformly spread over whole days, uris and ips.
+ */
+final class HitGenerator {
+
+    static final String APP = "ewm-main-service";
+    static final LocalDateTime FIRST_DAY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final int uris;
+    private final int ips;
+
+    HitGenerator(int uris, int ips) {
+        this.uris = uris;
+        this.ips = ips;
+    }
+
+    static String uri(int index) {
+        return "/events/" + index;
+    }
+
+    static String ip(int index) {
+        return "10." + (index >>> 16 & 0xff) + "." + (index >>> 8 & 0xff) + "." + (index & 0xff);
+    }
+
+    EndpointHitDto next(LocalDateTime day) {
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri(random.nextInt(uris)))
+                .ip(ip(random.nextInt(ips)))
+                .timestamp(day.plusSeconds(random.nextInt(24 * 60 * 60)))
+                .build();
+    }
+
+    List<EndpointHitDto> next(LocalDateTime day, int count) {
+        List<EndpointHitDto> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(next(day));
+        }
+        return hits;
+    }
+
+    /**
+     * Stores hitsPerDay hits for each of the days starting at FIRST_DAY, in requests of 1000 hits.
+     */
+    void load(StatsService statsService, int days, int hitsPerDay) {
+        for (int day = 0; day < days; day++) {
+            LocalDateTime date = FIRST_DAY.plusDays(day);
+            for (int stored = 0; stored < hitsPerDay; stored += CHUNK_SIZE) {
+                statsService.saveHits(next(date, Math.min(CHUNK_SIZE, hitsPerDay - stored)));
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.service.StatsService;
+import ru.practicum.stats.server.storage.HitStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Raw hit ingest of the two storage engines (stats.storage.engine), one batch of hits per operation.
+ * append stores the batch through HitStore.append in its own transaction, as the writer does,
+ * without rollups; saveHits goes through the whole write path (dictionaries, rollups,
+ * sketches and bitmaps). Segment files go to a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HitIngestBenchmark {
+
+    @Param({"database", "segments"})
+    private String engine;
+
+    @Param({"1000"})
+    private int batchSize;
+
+    @Param({"100"})
+    private int uris;
+
+    @Param({"20000"})
+    private int ips;
+
+    private Path segmentDir;
+    private BenchServer server;
+    private HitStore hitStore;
+    private StatsService statsService;
+    private TransactionTemplate transactionTemplate;
+    private HitGenerator generator;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        segmentDir = Files.createTempDirectory("bench-segments");
+        server = BenchServer.start("stats.storage.engine=" + engine, "stats.storage.segments.dir=" + segmentDir);
+        hitStore = server.bean(HitStore.class);
+        statsService = server.bean(StatsService.class);
+        transactionTemplate = new TransactionTemplate(server.bean(PlatformTransactionManager.class));
+        generator = new HitGenerator(uris, ips);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+        try (Stream<Path> files = Files.list(segmentDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(segmentDir);
+    }
+
+    @Benchmark
+    public void append() {
+        List<EndpointHit> hits = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            hits.add(EndpointHit.builder()
+                    .appId(1)
+                    .uriId(random.nextInt(uris) + 1)
+                    .ipId(random.nextInt(ips) + 1)
+                    .timestamp(HitGenerator.FIRST_DAY.plusSeconds(random.nextInt(24 * 60 * 60)))
+                    .build());
+        }
+        transactionTemplate.executeWithoutResult(status -> hitStore.append(hits));
+    }
+
+    @Benchmark
+    public void saveHits() {
+        statsService.saveHits(generator.next(HitGenerator.FIRST_DAY, batchSize));
+    }
+}
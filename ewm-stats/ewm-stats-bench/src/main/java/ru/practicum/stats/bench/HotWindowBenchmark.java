@@ -0,0 +1,155 @@
+package ru.practicum.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.repository.StatsRepository;
+import ru.practicum.stats.server.service.StatsService;
+import ru.practicum.stats.server.storage.HitStore;
+import ru.practicum.stats.server.storage.HotHitWindow;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * /stats over the last day: the in-memory hot window (HotHitWindow.count) against the JPQL
+ * aggregates over endpoint_hits (StatsRepository), with hits spread evenly over the day.
+ * The hits are appended to the HitStore directly and then loaded into the window as on startup;
+ * the window cap (stats.hot.max-hits) is lifted so that it holds all of them.
+ * The heap taken by the window is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class HotWindowBenchmark {
+
+    private static final int APPEND_CHUNK = 10000;
+
+    @Param({"200000", "1000000", "2000000"})
+    private int hits;
+
+    @Param({"false", "true"})
+    private boolean unique;
+
+    @Param({"100"})
+    private int uris;
+
+    @Param({"20000"})
+    private int ips;
+
+    private BenchServer server;
+    private HotHitWindow hotWindow;
+    private StatsRepository statsRepository;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchServer.start("stats.hot.max-hits=" + Long.MAX_VALUE);
+        hotWindow = server.bean(HotHitWindow.class);
+        statsRepository = server.bean(StatsRepository.class);
+        end = LocalDateTime.now();
+        start = end.minusDays(1);
+
+        // dictionary entries for every uri and ip, from hits too old for the window and the range
+        List<EndpointHitDto> seed = new ArrayList<>();
+        for (int i = 0; i < ips; i++) {
+            seed.add(EndpointHitDto.builder()
+                    .app(HitGenerator.APP)
+                    .uri(HitGenerator.uri(i % uris))
+                    .ip(HitGenerator.ip(i))
+                    .timestamp(HitGenerator.FIRST_DAY)
+                    .build());
+        }
+        server.bean(StatsService.class).saveHits(seed);
+
+        JdbcTemplate jdbcTemplate = server.bean(JdbcTemplate.class);
+        int appId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM app_dictionary", Integer.class);
+        int[] uriIds = jdbcTemplate.queryForList("SELECT id FROM uri_dictionary", Integer.class).stream()
+                .mapToInt(Integer::intValue).toArray();
+        int[] ipIds = jdbcTemplate.queryForList("SELECT id FROM ip_dictionary", Integer.class).stream()
+                .mapToInt(Integer::intValue).toArray();
+
+        HitStore hitStore = server.bean(HitStore.class);
+        TransactionTemplate transactionTemplate =
+                new TransactionTemplate(server.bean(PlatformTransactionManager.class));
+        SplittableRandom random = new SplittableRandom(42);
+        long spanMillis = TimeUnit.DAYS.toMillis(1);
+        for (int appended = 0; appended < hits; appended += APPEND_CHUNK) {
+            List<EndpointHit> chunk = new ArrayList<>(APPEND_CHUNK);
+            for (int i = 0; i < Math.min(APPEND_CHUNK, hits - appended); i++) {
+                chunk.add(EndpointHit.builder()
+                        .appId(appId)
+                        .uriId(uriIds[random.nextInt(uriIds.length)])
+                        .ipId(ipIds[random.nextInt(ipIds.length)])
+                        .timestamp(start.plusNanos(TimeUnit.MILLISECONDS.toNanos(random.nextLong(spanMillis))))
+                        .build());
+            }
+            transactionTemplate.executeWithoutResult(status -> hitStore.append(chunk));
+        }
+
+        long heapBefore = usedHeap();
+        hotWindow.load();
+        long heapAfter = usedHeap();
+        System.out.printf("%nHot window: %d hits, %.1f MB of heap%n", hits, (heapAfter - heapBefore) / 1e6);
+
+        if (!counts(hotWindow.count(start, end, null, unique)).equals(counts(jpql()))) {
+            throw new IllegalStateException("Hot window and JPQL disagree");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static Map<String, Long> counts(Map<String, Map<String, Long>> byApp) {
+        return byApp.get(HitGenerator.APP);
+    }
+
+    private static Map<String, Long> counts(List<ViewStatsDto> stats) {
+        return stats.stream().collect(Collectors.toMap(ViewStatsDto::getUri, ViewStatsDto::getHits));
+    }
+
+    @Benchmark
+    public Map<String, Map<String, Long>> hotWindow() {
+        return hotWindow.count(start, end, null, unique);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> jpql() {
+        return unique ? statsRepository.getStatsUniqueNoUri(start, end) : statsRepository.getStatsNoUri(start, end);
+    }
+}
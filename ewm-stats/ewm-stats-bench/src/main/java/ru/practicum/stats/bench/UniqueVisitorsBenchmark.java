@@ -0,0 +1,95 @@
+package ru.practicum.stats.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.repository.StatsRepository;
+import ru.practicum.stats.server.service.StatsPage;
+import ru.practicum.stats.server.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Exact unique visitors per uri: GET /stats?unique=true served from the day IP bitmaps
+ * (StatsService) against COUNT(DISTINCT ip) over the raw hits (StatsRepository).
+ * With aligned=false the range starts and ends at noon, so half a day at each edge
+ * is read from the raw hits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UniqueVisitorsBenchmark {
+
+    @Param({"7", "30"})
+    private int days;
+
+    @Param({"10000"})
+    private int hitsPerDay;
+
+    @Param({"100"})
+    private int uris;
+
+    @Param({"20000"})
+    private int ips;
+
+    @Param({"true", "false"})
+    private boolean aligned;
+
+    private BenchServer server;
+    private StatsService statsService;
+    private StatsRepository statsRepository;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = BenchServer.start();
+        statsService = server.bean(StatsService.class);
+        statsRepository = server.bean(StatsRepository.class);
+        new HitGenerator(uris, ips).load(statsService, days, hitsPerDay);
+
+        start = aligned ? HitGenerator.FIRST_DAY : HitGenerator.FIRST_DAY.plusHours(12);
+        end = aligned ? HitGenerator.FIRST_DAY.plusDays(days) : HitGenerator.FIRST_DAY.plusDays(days).minusHours(12);
+
+        if (!counts(bitmaps()).equals(counts(countDistinct()))) {
+            throw new IllegalStateException("Bitmaps and COUNT(DISTINCT) disagree");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    private static Map<String, Long> counts(List<ViewStatsDto> stats) {
+        return stats.stream().collect(Collectors.toMap(ViewStatsDto::getUri, ViewStatsDto::getHits));
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> bitmaps() {
+        return statsService.getStats(start, end, null, true, false, StatsPage.unpaged());
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> countDistinct() {
+        return statsRepository.getStatsUniqueNoUri(start, end);
+    }
+}
@@ -0,0 +1,367 @@
+package ru.practicum.stats.client;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded queue of hits drained by a background thread.
+ * A batch is sent when it reaches batchSize or when flushInterval has passed
+ * since its first hit, whichever comes first.
+ * <p>
+ * With a spool directory configured, batches that fail to send are written to a {@link HitSpool}
+ * instead of being dropped, and a second thread replays them at no more than replayRate hits
+ * per second once the server accepts hits again. While the server is unavailable, replay attempts
+ * back off exponentially from replayInterval up to replayMaxBackoff. A batch the server rejects
+ * (4xx), or keeps failing on although it is up, is split in halves until the hits to blame are
+ * found; those are dropped and counted as rejected, so one bad hit cannot block the spool.
+ */
+@Slf4j
+class HitBuffer implements AutoCloseable {
+
+    /**
+     * Failed replays of the same batch before it is split to look for hits the server fails on.
+     */
+    private static final int ISOLATE_AFTER_FAILURES = 3;
+
+    private final BlockingQueue<EndpointHitDto> queue;
+    /**
+     * Hits that did not fit into the queue under the SPILL policy when there is no spool,
+     * null otherwise.
+     */
+    private final BlockingQueue<EndpointHitDto> spilled;
+    private final HitBufferSettings settings;
+    private final Function<List<EndpointHitDto>, Delivery> sender;
+    private final Thread flusher;
+    private final HitSpool spool;
+    private final Thread replayer;
+
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Outcome of sending a batch.
+     */
+    enum Delivery {
+        DELIVERED,
+        /**
+         * The server refused the batch (4xx); sending it again will not help.
+         */
+        REJECTED,
+        /**
+         * The server is unavailable or failed (5xx, I/O error).
+         */
+        FAILED
+    }
+
+    /**
+     * @param sender delivers a batch
+     */
+    HitBuffer(HitBufferSettings settings, Function<List<EndpointHitDto>, Delivery> sender) {
+        this.settings = settings;
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(settings.getCapacity());
+        this.spilled = settings.getOverflowPolicy() == OverflowPolicy.SPILL && settings.getSpoolDir() == null
+                ? new ArrayBlockingQueue<>(settings.getCapacity())
+                : null;
+        if (settings.getSpoolDir() != null) {
+            this.spool = new HitSpool(settings.getSpoolDir(),
+                    settings.getSpoolMaxBytes(),
+                    settings.getSpoolFileBytes());
+            this.replayer = new Thread(this::replay, "stats-hit-replayer");
+            this.replayer.setDaemon(true);
+            this.replayer.start();
+        } else {
+            this.spool = null;
+            this.replayer = null;
+        }
+        this.flusher = new Thread(this::run, "stats-hit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    void add(EndpointHitDto hit) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        switch (settings.getOverflowPolicy()) {
+            case DROP_OLDEST -> {
+                while (!queue.offer(hit)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(hit, settings.getBlockTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                        dropped.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+            }
+            case SPILL -> {
+                if (queue.offer(hit)) {
+                    return;
+                }
+                if (spool != null) {
+                    toSpool(List.of(hit));
+                } else if (!spilled.offer(hit)) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    long getFlushedCount() {
+        return flushed.get();
+    }
+
+    long getDroppedCount() {
+        return dropped.get() + (spool != null ? spool.getLostCount() : 0);
+    }
+
+    long getRejectedCount() {
+        return rejected.get();
+    }
+
+    long getSpooledCount() {
+        return spool != null ? spool.getRecordCount() : 0;
+    }
+
+    long getSpoolSizeBytes() {
+        return spool != null ? spool.getSizeBytes() : 0;
+    }
+
+    long getSpoolBacklogAgeMillis() {
+        return spool != null ? spool.getBacklogAgeMillis() : 0;
+    }
+
+    int size() {
+        return queue.size() + (spilled == null ? 0 : spilled.size());
+    }
+
+    private void run() {
+        long intervalMs = settings.getFlushInterval().toMillis();
+        List<EndpointHitDto> batch = new ArrayList<>(settings.getBatchSize());
+
+        while (!closed || size() > 0) {
+            try {
+                if (spilled != null) {
+                    spilled.drainTo(batch, settings.getBatchSize());
+                }
+                if (batch.isEmpty()) {
+                    EndpointHitDto first = queue.poll(intervalMs, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+
+                long deadline = System.currentTimeMillis() + intervalMs;
+                while (batch.size() < settings.getBatchSize() && !closed) {
+                    queue.drainTo(batch, settings.getBatchSize() - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= settings.getBatchSize() || wait <= 0) {
+                        break;
+                    }
+                    EndpointHitDto next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() wakes the thread up; remaining hits are drained below
+                queue.drainTo(batch, settings.getBatchSize() - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                batch = new ArrayList<>(settings.getBatchSize());
+            }
+        }
+    }
+
+    private void deliver(List<EndpointHitDto> batch) {
+        if (send(batch) == Delivery.DELIVERED) {
+            flushed.addAndGet(batch.size());
+        } else if (spool != null) {
+            // the replayer sorts out the hits of a rejected batch
+            toSpool(batch);
+        } else {
+            dropped.addAndGet(batch.size());
+        }
+    }
+
+    private Delivery send(List<EndpointHitDto> batch) {
+        try {
+            return sender.apply(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to send {} hits: {}", batch.size(), e.getMessage());
+            return Delivery.FAILED;
+        }
+    }
+
+    private void toSpool(List<EndpointHitDto> hits) {
+        int spooled = spool.append(hits);
+        if (spooled < hits.size()) {
+            log.warn("Hit spool is full, {} hits dropped", hits.size() - spooled);
+            dropped.addAndGet(hits.size() - spooled);
+        }
+    }
+
+    /**
+     * Sends spooled hits in batches, pacing them to replayRate hits per second.
+     * A batch that failed stays in the spool and is retried with exponential backoff; after
+     * ISOLATE_AFTER_FAILURES failures in a row, or when rejected, it is split to find the bad hits.
+     */
+    private void replay() {
+        int failures = 0;
+        try {
+            while (!closed) {
+                HitSpool.Batch batch = spool.read(settings.getBatchSize());
+                if (batch.isEmpty()) {
+                    Thread.sleep(settings.getReplayInterval().toMillis());
+                    continue;
+                }
+
+                List<EndpointHitDto> hits = batch.getHits();
+                long started = System.currentTimeMillis();
+                Delivery delivery = send(hits);
+                pace(hits.size(), started);
+                if (delivery == Delivery.DELIVERED) {
+                    flushed.addAndGet(hits.size());
+                } else {
+                    boolean split = delivery == Delivery.REJECTED || ++failures >= ISOLATE_AFTER_FAILURES;
+                    if (!split || !isolate(hits, delivery)) {
+                        Thread.sleep(backoff(Math.max(failures, 1)));
+                        continue;
+                    }
+                }
+                spool.commit(batch);
+                failures = 0;
+            }
+        } catch (InterruptedException e) {
+            // close() stops the replay; the rest of the spool is sent after the next start
+        }
+    }
+
+    /**
+     * Resolves every hit of a batch that was not delivered as a whole: sends the halves, and the
+     * halves of those that fail, down to single hits. Single hits the server rejects, or fails on
+     * while it accepts others, are dropped and counted as rejected.
+     *
+     * @return false when no part got an answer: the server is down and the batch should stay spooled
+     */
+    private boolean isolate(List<EndpointHitDto> hits, Delivery delivery) throws InterruptedException {
+        Isolation isolation = new Isolation();
+        isolation.answered = delivery == Delivery.REJECTED;
+        if (hits.size() == 1) {
+            isolation.pending.add(hits);
+            isolation.deliveries.add(delivery);
+        } else {
+            split(hits, isolation);
+        }
+
+        while (!isolation.pending.isEmpty()) {
+            List<EndpointHitDto> part = isolation.pending.remove(0);
+            Delivery result = isolation.deliveries.remove(0);
+            if (result == Delivery.FAILED && !isolation.answered) {
+                return false;
+            }
+            if (part.size() > 1) {
+                split(part, isolation);
+            } else {
+                EndpointHitDto hit = part.get(0);
+                log.warn("Dropping spooled hit the stats server {}: app={}, uri={}, hitId={}",
+                        result == Delivery.REJECTED ? "rejects" : "fails on",
+                        hit.getApp(), hit.getUri(), hit.getHitId());
+                rejected.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private void split(List<EndpointHitDto> hits, Isolation isolation) throws InterruptedException {
+        int middle = hits.size() / 2;
+        for (List<EndpointHitDto> half : List.of(hits.subList(0, middle), hits.subList(middle, hits.size()))) {
+            long started = System.currentTimeMillis();
+            Delivery result = send(half);
+            pace(half.size(), started);
+            if (result == Delivery.DELIVERED) {
+                flushed.addAndGet(half.size());
+            } else {
+                isolation.pending.add(half);
+                isolation.deliveries.add(result);
+            }
+            if (result != Delivery.FAILED) {
+                isolation.answered = true;
+            }
+        }
+    }
+
+    /**
+     * Keeps replay to replayRate hits per second.
+     */
+    private void pace(int hits, long started) throws InterruptedException {
+        long pause = hits * 1000L / settings.getReplayRate() - (System.currentTimeMillis() - started);
+        if (pause > 0) {
+            Thread.sleep(pause);
+        }
+    }
+
+    private long backoff(int failures) {
+        long interval = settings.getReplayInterval().toMillis();
+        long max = settings.getReplayMaxBackoff().toMillis();
+        return failures >= 31 ? max : Math.min(max, interval << (failures - 1));
+    }
+
+    /**
+     * Stops accepting hits and sends what is left in the queue.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flusher.interrupt();
+        try {
+            flusher.join(settings.getFlushInterval().toMillis() * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (spool != null) {
+            replayer.interrupt();
+            try {
+                replayer.join(settings.getFlushInterval().toMillis() * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            spool.close();
+        }
+        log.info("Hit buffer closed: flushed={}, dropped={}, rejected={}, left={}, spooled={}",
+                flushed.get(), getDroppedCount(), rejected.get(), size(), getSpooledCount());
+    }
+
+    /**
+     * Parts of a batch still to resolve, with the outcome of their last send.
+     */
+    private static final class Isolation {
+        private final List<List<EndpointHitDto>> pending = new ArrayList<>();
+        private final List<Delivery> deliveries = new ArrayList<>();
+        private boolean answered;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.stats.client;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the asynchronous hit buffer of {@link StatsServiceClient}.
+ */
+@Getter
+@Builder
+public class HitBufferSettings {
+
+    @Builder.Default
+    private final int capacity = 10_000;
+
+    @Builder.Default
+    private final int batchSize = 100;
+
+    @Builder.Default
+    private final Duration flushInterval = Duration.ofSeconds(1);
+
+    @Builder.Default
+    private final OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    @Builder.Default
+    private final Duration blockTimeout = Duration.ofMillis(50);
+
+    /**
+     * Directory for hits that could not be delivered, or null to drop them.
+     */
+    private final Path spoolDir;
+
+    @Builder.Default
+    private final long spoolMaxBytes = 256L * 1024 * 1024;
+
+    @Builder.Default
+    private final long spoolFileBytes = 16L * 1024 * 1024;
+
+    /**
+     * Maximum hits per second replayed from the spool.
+     */
+    @Builder.Default
+    private final int replayRate = 500;
+
+    /**
+     * Pause between checks of an empty spool, and before the first retry of a failed replay.
+     */
+    @Builder.Default
+    private final Duration replayInterval = Duration.ofSeconds(5);
+
+    /**
+     * Upper bound of the pause between replay attempts, which doubles with every failure.
+     */
+    @Builder.Default
+    private final Duration replayMaxBackoff = Duration.ofMinutes(5);
+
+    public static HitBufferSettings defaults() {
+        return HitBufferSettings.builder().build();
+    }
+}
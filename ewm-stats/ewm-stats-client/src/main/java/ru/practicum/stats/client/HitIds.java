@@ -0,0 +1,21 @@
+package ru.practicum.stats.client;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Time-ordered (version 7, RFC 9562) UUIDs for client hit ids: 48 bits of epoch millis
+ * followed by 74 random bits. The server relies on the timestamp to tell how old a hit id is.
+ */
+final class HitIds {
+
+    private HitIds() {
+    }
+
+    static UUID newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long msb = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextInt() & 0x0FFFL);
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
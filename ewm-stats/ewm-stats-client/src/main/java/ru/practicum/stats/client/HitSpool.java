@@ -0,0 +1,505 @@
+package ru.practicum.stats.client;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.stats.dto.EndpointHitDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only files of hits that could not be delivered, replayed oldest first.
+ * <p>
+ * Each record is framed as payload length, CRC32 of the payload and the payload itself, so a
+ * record torn by a crash is detected: the tail of the newest file is truncated to the last
+ * intact record when the spool is opened. Files roll at fileBytes; a file is deleted once
+ * all of its records are replayed. The read position in the oldest file is saved to a
+ * checkpoint file on every commit, so replay resumes there after a restart. Delivery is
+ * at least once: a batch read but not committed before a restart is read again.
+ */
+@Slf4j
+class HitSpool implements AutoCloseable {
+
+    private static final String FILE_PREFIX = "hits-";
+    private static final String FILE_SUFFIX = ".spool";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final String CHECKPOINT_FILE = "read.checkpoint";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long fileBytes;
+
+    /**
+     * Spool files, oldest first; the last one is appended to.
+     */
+    private final Deque<SpoolFile> files = new ArrayDeque<>();
+    private FileChannel writer;
+    private long nextFileNumber;
+
+    /**
+     * Offset of the next unread record in the oldest file.
+     */
+    private long readPosition;
+    private long bytes;
+    private long records;
+    private long lost;
+
+    /**
+     * When the oldest pending record was spooled, in epoch millis; 0 when the spool is empty.
+     */
+    private long oldestSpooledAt;
+
+    HitSpool(Path dir, long maxBytes, long fileBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.fileBytes = fileBytes;
+        try {
+            Files.createDirectories(dir);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open hit spool in " + dir, e);
+        }
+    }
+
+    private void open() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> listing = Files.list(dir)) {
+            paths = listing
+                    .filter(path -> path.getFileName().toString().startsWith(FILE_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        for (Path path : paths) {
+            SpoolFile file = scan(path);
+            files.add(file);
+            bytes += file.size;
+            records += file.records;
+            nextFileNumber = Math.max(nextFileNumber, fileNumber(path) + 1);
+        }
+
+        if (files.isEmpty()) {
+            files.add(new SpoolFile(newFilePath(), 0, 0));
+        }
+        SpoolFile last = files.getLast();
+        writer = FileChannel.open(last.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // drops a record torn by a crash
+        writer.truncate(last.size);
+        restoreCheckpoint();
+
+        if (records > 0) {
+            List<Record> first = readRecords(files.getFirst(), readPosition, 1);
+            oldestSpooledAt = first.isEmpty() ? System.currentTimeMillis() : first.get(0).spooledAt;
+            log.info("Hit spool {} has {} hits ({} bytes) to replay", dir, records, bytes);
+        }
+    }
+
+    /**
+     * Skips the records of the oldest file that were delivered before the last shutdown.
+     * A checkpoint of another file, or one that is not at a record boundary, is ignored
+     * and the file is replayed from the start.
+     */
+    private void restoreCheckpoint() throws IOException {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        long checkpointFile;
+        long position;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            checkpointFile = in.readLong();
+            position = in.readLong();
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable hit spool checkpoint {}: {}", path, e.getMessage());
+            return;
+        }
+
+        SpoolFile head = files.getFirst();
+        if (checkpointFile != fileNumber(head.path) || position <= 0 || position > head.size) {
+            return;
+        }
+
+        long at = 0;
+        long skipped = 0;
+        try (FileChannel channel = FileChannel.open(head.path, StandardOpenOption.READ)) {
+            byte[] payload;
+            while (at < position && (payload = readFrame(channel, at, head.size)) != null) {
+                at += HEADER_BYTES + payload.length;
+                skipped++;
+            }
+        }
+        if (at != position) {
+            log.warn("Ignoring hit spool checkpoint {} of {}: not at a record boundary", position, head.path);
+            return;
+        }
+
+        readPosition = position;
+        head.records -= skipped;
+        discard(skipped, position);
+    }
+
+    /**
+     * Saves the read position. The checkpoint is written to a temporary file and renamed
+     * over the previous one, so a crash never leaves it half written.
+     */
+    private void saveCheckpoint() {
+        Path path = dir.resolve(CHECKPOINT_FILE);
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeLong(fileNumber(files.getFirst().path));
+                out.writeLong(readPosition);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to save hit spool checkpoint {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the intact records of a file; the file size is cut to the end of the last one.
+     */
+    private SpoolFile scan(Path path) throws IOException {
+        long size = Files.size(path);
+        long position = 0;
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            byte[] payload;
+            while ((payload = readFrame(channel, position, size)) != null) {
+                position += HEADER_BYTES + payload.length;
+                count++;
+            }
+        }
+
+        if (position < size) {
+            log.warn("Hit spool file {} is damaged after {} records, {} bytes ignored", path, count, size - position);
+        }
+        return new SpoolFile(path, position, count);
+    }
+
+    /**
+     * Appends hits until the spool reaches maxBytes.
+     *
+     * @return the number of hits spooled; the rest did not fit
+     */
+    synchronized int append(List<EndpointHitDto> hits) {
+        long now = System.currentTimeMillis();
+        int spooled = 0;
+        try {
+            for (EndpointHitDto hit : hits) {
+                byte[] payload = encode(hit, now);
+                int frameBytes = HEADER_BYTES + payload.length;
+                if (payload.length > MAX_RECORD_BYTES || bytes + frameBytes > maxBytes) {
+                    break;
+                }
+
+                SpoolFile last = files.getLast();
+                if (last.size > 0 && last.size + frameBytes > fileBytes) {
+                    last = roll();
+                }
+
+                ByteBuffer frame = ByteBuffer.allocate(frameBytes);
+                frame.putInt(payload.length).putInt(crc(payload)).put(payload).flip();
+                long position = last.size;
+                while (frame.hasRemaining()) {
+                    position += writer.write(frame, position);
+                }
+
+                last.size += frameBytes;
+                last.records++;
+                bytes += frameBytes;
+                if (records++ == 0) {
+                    oldestSpooledAt = now;
+                }
+                spooled++;
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write to hit spool {}: {}", dir, e.getMessage());
+        }
+        return spooled;
+    }
+
+    private SpoolFile roll() throws IOException {
+        writer.close();
+        SpoolFile file = new SpoolFile(newFilePath(), 0, 0);
+        files.add(file);
+        writer = FileChannel.open(file.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return file;
+    }
+
+    /**
+     * Reads up to max of the oldest pending hits without removing them; see {@link #commit}.
+     */
+    synchronized Batch read(int max) {
+        while (true) {
+            SpoolFile head = files.getFirst();
+            if (readPosition < head.size) {
+                try {
+                    List<Record> read = readRecords(head, readPosition, max);
+                    if (!read.isEmpty()) {
+                        oldestSpooledAt = read.get(0).spooledAt;
+                        return new Batch(head, read);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to read hit spool file {}: {}", head.path, e.getMessage());
+                }
+                // unreadable rest of the file
+                log.warn("Skipping {} unreadable hits in spool file {}", head.records, head.path);
+                lost += head.records;
+                discard(head.records, head.size - readPosition);
+                readPosition = head.size;
+                head.records = 0;
+            }
+
+            if (!removeHead()) {
+                return new Batch(head, List.of());
+            }
+        }
+    }
+
+    private List<Record> readRecords(SpoolFile file, long from, int max) throws IOException {
+        List<Record> read = new ArrayList<>(Math.min(max, 1024));
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            long position = from;
+            byte[] payload;
+            while (read.size() < max && (payload = readFrame(channel, position, file.size)) != null) {
+                position += HEADER_BYTES + payload.length;
+                read.add(decode(payload, position));
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Payload of the record at position, or null when there is no intact record before limit.
+     */
+    private static byte[] readFrame(FileChannel channel, long position, long limit) throws IOException {
+        if (position + HEADER_BYTES > limit) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, position);
+        int length = header.getInt(0);
+        if (length <= 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > limit) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, position + HEADER_BYTES);
+        return crc(payload.array()) == header.getInt(4) ? payload.array() : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of spool file");
+            }
+        }
+    }
+
+    /**
+     * Removes the hits of a batch returned by {@link #read} after they were delivered.
+     */
+    synchronized void commit(Batch batch) {
+        if (batch.isEmpty() || files.peekFirst() != batch.file) {
+            return;
+        }
+
+        long end = batch.records.get(batch.records.size() - 1).end;
+        discard(batch.records.size(), end - readPosition);
+        batch.file.records -= batch.records.size();
+        readPosition = end;
+        if (readPosition == batch.file.size) {
+            removeHead();
+        } else {
+            saveCheckpoint();
+        }
+    }
+
+    /**
+     * Deletes the fully read oldest file, or empties it when it is also the one appended to.
+     *
+     * @return whether there is a next file to read
+     */
+    private boolean removeHead() {
+        SpoolFile head = files.getFirst();
+        try {
+            if (files.size() == 1) {
+                writer.truncate(0);
+                head.size = 0;
+                readPosition = 0;
+                saveCheckpoint();
+                return false;
+            }
+            files.removeFirst();
+            Files.deleteIfExists(head.path);
+            readPosition = 0;
+            saveCheckpoint();
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to clean up hit spool file {}: {}", head.path, e.getMessage());
+            return files.size() > 1;
+        }
+    }
+
+    private void discard(long count, long size) {
+        records -= count;
+        bytes -= size;
+        if (records <= 0) {
+            records = 0;
+            oldestSpooledAt = 0;
+        }
+    }
+
+    synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Hits skipped because their spool records could not be read.
+     */
+    synchronized long getLostCount() {
+        return lost;
+    }
+
+    synchronized long getSizeBytes() {
+        return bytes;
+    }
+
+    /**
+     * Milliseconds since the oldest pending hit was spooled, 0 when the spool is empty.
+     */
+    synchronized long getBacklogAgeMillis() {
+        return records == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldestSpooledAt);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close hit spool {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private Path newFilePath() {
+        return dir.resolve(String.format("%s%012d%s", FILE_PREFIX, nextFileNumber++, FILE_SUFFIX));
+    }
+
+    private static long fileNumber(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(EndpointHitDto hit, long spooledAt) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeLong(spooledAt);
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+            out.writeLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(hit.getTimestamp().getNano());
+            out.writeBoolean(hit.getHitId() != null);
+            if (hit.getHitId() != null) {
+                out.writeLong(hit.getHitId().getMostSignificantBits());
+                out.writeLong(hit.getHitId().getLeastSignificantBits());
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Record decode(byte[] payload, long end) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long spooledAt = in.readLong();
+            EndpointHitDto hit = EndpointHitDto.builder()
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .timestamp(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                    .hitId(in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null)
+                    .build();
+            return new Record(hit, spooledAt, end);
+        }
+    }
+
+    private static final class SpoolFile {
+        private final Path path;
+        private long size;
+        private long records;
+
+        SpoolFile(Path path, long size, long records) {
+            this.path = path;
+            this.size = size;
+            this.records = records;
+        }
+    }
+
+    private static final class Record {
+        private final EndpointHitDto hit;
+        private final long spooledAt;
+
+        /**
+         * Offset right after the record.
+         */
+        private final long end;
+
+        Record(EndpointHitDto hit, long spooledAt, long end) {
+            this.hit = hit;
+            this.spooledAt = spooledAt;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Hits read from the oldest spool file, removed from the spool by {@link #commit}.
+     */
+    static final class Batch {
+        private final SpoolFile file;
+        private final List<Record> records;
+        @Getter
+        private final List<EndpointHitDto> hits;
+
+        private Batch(SpoolFile file, List<Record> records) {
+            this.file = file;
+            this.records = records;
+            this.hits = records.stream().map(record -> record.hit).toList();
+        }
+
+        boolean isEmpty() {
+            return records.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.stats.client;
+
+/**
+ * What {@link StatsServiceClient#recordHit} does when the hit buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Evicts the oldest buffered hit.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Waits up to the block timeout for free space, then drops the new hit.
+     */
+    BLOCK,
+
+    /**
+     * Writes the hit to the disk spool, or without one to an overflow queue of the same capacity,
+     * which the flusher drains first. The caller never waits for the server.
+     */
+    SPILL
+}
@@ -2,31 +2,132 @@ package ru.practicum.stats.client;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 import ru.practicum.stats.dto.EndpointHitDto;
 import ru.practicum.stats.dto.ViewStatsDto;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Slf4j
-public class StatsServiceClient extends BaseClient {
+public class StatsServiceClient extends BaseClient implements AutoCloseable {
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final HitBuffer hitBuffer;
 
     public StatsServiceClient(@Value("${stats-server.url}") String serverUrl) {
+        this(serverUrl, HitBufferSettings.defaults());
+    }
+
+    public StatsServiceClient(String serverUrl, HitBufferSettings bufferSettings) {
         super(new RestTemplate(), serverUrl);
+        this.hitBuffer = new HitBuffer(bufferSettings, this::sendHits);
     }
 
+    /**
+     * Sends a hit synchronously. Sets a hit id when there is none, so resending the same dto
+     * after a failure does not count the hit twice.
+     */
     public ResponseEntity<Object> sendHit(EndpointHitDto dto) {
         log.debug("Forwarding hit: {}", dto);
+        assignHitId(dto);
         return post("/hit", dto, Object.class);
     }
 
+    /**
+     * Queues a hit for background sending and returns immediately. The hit gets a hit id
+     * (when it has none) that stays the same across retries and spool replays.
+     */
+    public void recordHit(EndpointHitDto dto) {
+        assignHitId(dto);
+        hitBuffer.add(dto);
+    }
+
+    private static void assignHitId(EndpointHitDto dto) {
+        if (dto.getHitId() == null) {
+            dto.setHitId(HitIds.newId());
+        }
+    }
+
+    public long getFlushedHitCount() {
+        return hitBuffer.getFlushedCount();
+    }
+
+    public long getDroppedHitCount() {
+        return hitBuffer.getDroppedCount();
+    }
+
+    public int getBufferedHitCount() {
+        return hitBuffer.size();
+    }
+
+    /**
+     * Spooled hits dropped because the server rejected them or kept failing on them alone.
+     */
+    public long getRejectedHitCount() {
+        return hitBuffer.getRejectedCount();
+    }
+
+    /**
+     * Hits waiting in the disk spool for the server to come back.
+     */
+    public long getSpooledHitCount() {
+        return hitBuffer.getSpooledCount();
+    }
+
+    public long getSpoolSizeBytes() {
+        return hitBuffer.getSpoolSizeBytes();
+    }
+
+    /**
+     * How long the oldest spooled hit has been waiting, zero when the spool is empty.
+     */
+    public Duration getSpoolBacklogAge() {
+        return Duration.ofMillis(hitBuffer.getSpoolBacklogAgeMillis());
+    }
+
+    /**
+     * Flushes the buffered hits and stops the background sender.
+     */
+    @Override
+    public void close() {
+        hitBuffer.close();
+    }
+
+    private HitBuffer.Delivery sendHits(List<EndpointHitDto> hits) {
+        log.debug("Forwarding {} hits", hits.size());
+        HttpStatusCode status = post("/hit/batch", hits, Object.class).getStatusCode();
+        if (status.is2xxSuccessful()) {
+            return HitBuffer.Delivery.DELIVERED;
+        }
+        return status.is4xxClientError() ? HitBuffer.Delivery.REJECTED : HitBuffer.Delivery.FAILED;
+    }
+
     public ResponseEntity<List<ViewStatsDto>> getStats(String start,
                                                        String end,
                                                        List<String> uris,
                                                        boolean unique) {
+        return getStats(start, end, uris, unique, null, null);
+    }
+
+    /**
+     * One page of stats, at most limit rows. When the page is full, the response carries
+     * the cursor of the next page in the X-Next-Cursor header (see {@link #nextCursor}).
+     *
+     * @param limit  maximum number of rows, or null for all
+     * @param cursor cursor of the previous response, or null for the first page
+     */
+    public ResponseEntity<List<ViewStatsDto>> getStats(String start,
+                                                       String end,
+                                                       List<String> uris,
+                                                       boolean unique,
+                                                       Integer limit,
+                                                       String cursor) {
         StringBuilder url = new StringBuilder("/stats?start={start}&end={end}&unique={unique}");
 
         Map<String, Object> params = new HashMap<>();
@@ -34,6 +135,15 @@ public class StatsServiceClient extends BaseClient {
         params.put("end", end);
         params.put("unique", unique);
 
+        if (limit != null) {
+            url.append("&limit={limit}");
+            params.put("limit", limit);
+        }
+        if (cursor != null) {
+            url.append("&cursor={cursor}");
+            params.put("cursor", cursor);
+        }
+
         if (uris != null && !uris.isEmpty()) {
             for (int i = 0; i < uris.size(); i++) {
                 url.append("&uris={uri").append(i).append("}");
@@ -46,6 +156,14 @@ public class StatsServiceClient extends BaseClient {
 
         return ResponseEntity
                 .status(response.getStatusCode())
+                .headers(response.getHeaders())
                 .body(response.getBody() != null ? List.of(response.getBody()) : List.of());
     }
+
+    /**
+     * Cursor of the page after the given stats response, or null when it was the last page.
+     */
+    public static String nextCursor(ResponseEntity<List<ViewStatsDto>> response) {
+        return response.getHeaders().getFirst(NEXT_CURSOR_HEADER);
+    }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Getter
 @Setter
@@ -16,6 +17,12 @@ public class EndpointHitDto {
 
     private Long id;
 
+    /**
+     * Optional id set by the client, the same for every retry of the hit; the server stores
+     * a hit id only once. StatsServiceClient sets time-ordered (version 7) UUIDs.
+     */
+    private UUID hitId;
+
     @NotBlank(message = "app must not be blank")
     private String app;
 
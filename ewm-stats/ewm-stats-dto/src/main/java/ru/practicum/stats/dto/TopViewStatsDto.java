@@ -0,0 +1,21 @@
+package ru.practicum.stats.dto;
+
+import lombok.*;
+
+/**
+ * Approximate hits of one of the most visited uris within a recent window.
+ * The true number of hits lies between minHits and maxHits.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TopViewStatsDto {
+
+    private String app;
+    private String uri;
+    private Long hits;
+    private Long minHits;
+    private Long maxHits;
+}
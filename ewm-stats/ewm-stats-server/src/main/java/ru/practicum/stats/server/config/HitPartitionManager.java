@@ -0,0 +1,301 @@
+package ru.practicum.stats.server.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps endpoint_hits range-partitioned by month on PostgreSQL.
+ * Runs before Hibernate touches the schema: creates the partitioned table, or turns
+ * an existing plain table into the first partition, adds a BRIN index on created
+ * and creates partitions a few months ahead. The (uri_id, created) index is created
+ * by StatsSchemaInitializer, as on other databases.
+ * Hits outside all partitions go to endpoint_hits_default and are moved out when
+ * their month's partition is created.
+ * Once a day it creates the upcoming partitions and, when retention is configured,
+ * drops the partitions that are older and fully rolled up.
+ * On other databases the table stays unpartitioned.
+ */
+@Slf4j
+@Component
+public class HitPartitionManager {
+
+    private static final String TABLE = "endpoint_hits";
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    private static final String LEGACY_PARTITION = TABLE + "_legacy";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern RANGE = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE endpoint_hits (
+                id BIGINT NOT NULL,
+                app_id INTEGER,
+                uri_id INTEGER,
+                ip_id INTEGER,
+                created TIMESTAMP(6) NOT NULL,
+                hit_id UUID,
+                PRIMARY KEY (id, created)
+            ) PARTITION BY RANGE (created)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int partitionsAhead;
+    private final int retentionMonths;
+
+    private boolean partitioned;
+
+    public HitPartitionManager(JdbcTemplate jdbcTemplate,
+                               @Value("${stats.hits.partitions-ahead:3}") int partitionsAhead,
+                               @Value("${stats.hits.retention-months:0}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitionsAhead = partitionsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(database)) {
+            log.info("Hit partitioning is not supported for database {}, {} stays a plain table", database, TABLE);
+            return;
+        }
+
+        List<String> kind = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, TABLE);
+        if (kind.isEmpty()) {
+            executeInTransaction(CREATE_TABLE_SQL,
+                    "CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+            log.info("Created partitioned table {}", TABLE);
+        } else if ("r".equals(kind.get(0))) {
+            convertPlainTable();
+        }
+        partitioned = true;
+
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS endpoint_hits_created_brin ON " + TABLE
+                + " USING BRIN (created)");
+        createPartitions();
+    }
+
+    /**
+     * Renames the existing plain table and attaches it as the partition holding everything
+     * up to the end of the month of its latest hit.
+     */
+    private void convertPlainTable() {
+        LocalDateTime latest = jdbcTemplate.queryForObject(
+                "SELECT MAX(created) FROM " + TABLE, LocalDateTime.class);
+        LocalDateTime bound = monthStart(latest != null ? latest.toLocalDate() : LocalDate.now()).plusMonths(1);
+
+        List<String> primaryKey = jdbcTemplate.queryForList(
+                "SELECT conname::text FROM pg_constraint WHERE conrelid = to_regclass(?) AND contype = 'p'",
+                String.class, TABLE);
+
+        List<String> statements = new ArrayList<>();
+        statements.add("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+        // the primary key of the partitioned table must include created and reuses the name
+        primaryKey.forEach(name -> statements.add(
+                "ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT \"" + name + "\""));
+        statements.add("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+        statements.add("DELETE FROM " + LEGACY_PARTITION + " WHERE created IS NULL");
+        statements.add("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN created SET NOT NULL");
+        // same columns as the old table, which may still hold app, uri and ip as strings
+        statements.add("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS,"
+                + " PRIMARY KEY (id, created)) PARTITION BY RANGE (created)");
+        statements.add("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION
+                + " FOR VALUES FROM (MINVALUE) TO ('" + BOUND.format(bound) + "')");
+        statements.add("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+
+        executeInTransaction(statements.toArray(String[]::new));
+        log.info("Converted {} to a partitioned table, existing hits before {} kept in {}",
+                TABLE, bound, LEGACY_PARTITION);
+    }
+
+    @Scheduled(cron = "${stats.hits.partition-maintenance-cron:0 10 0 * * *}")
+    public void maintain() {
+        if (!partitioned) {
+            return;
+        }
+        createPartitions();
+        if (retentionMonths > 0) {
+            dropExpiredPartitions();
+        }
+    }
+
+    /**
+     * Creates monthly partitions from the end of the latest one through partitionsAhead
+     * months after the current one.
+     */
+    private void createPartitions() {
+        LocalDateTime currentMonth = monthStart(LocalDate.now());
+        LocalDateTime next = findPartitions().stream()
+                .map(Partition::getTo)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(currentMonth);
+        LocalDateTime last = currentMonth.plusMonths(partitionsAhead);
+
+        while (!next.isAfter(last)) {
+            createPartition(next, next.plusMonths(1));
+            next = next.plusMonths(1);
+        }
+    }
+
+    private void createPartition(LocalDateTime from, LocalDateTime to) {
+        String name = TABLE + "_p" + SUFFIX.format(from);
+        String range = "'" + BOUND.format(from) + "'";
+        String rangeEnd = "'" + BOUND.format(to) + "'";
+
+        // built detached so hits already in the default partition can be moved in before attaching
+        executeInTransaction(
+                "CREATE TABLE " + name + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)",
+                "WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE created >= " + range + " AND created < " + rangeEnd + " RETURNING *)"
+                        + " INSERT INTO " + name + " SELECT * FROM moved",
+                "ALTER TABLE " + TABLE + " ATTACH PARTITION " + name
+                        + " FOR VALUES FROM (" + range + ") TO (" + rangeEnd + ")");
+        log.info("Created hit partition {} for [{}, {})", name, from, to);
+    }
+
+    /**
+     * Drops partitions that end before the retention period, provided every hit in them
+     * is counted in the DAY rollups and in the all-time counters snapshot.
+     */
+    private void dropExpiredPartitions() {
+        LocalDateTime cutoff = monthStart(LocalDate.now()).minusMonths(retentionMonths);
+        Long snapshotted = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(last_hit_id), 0) FROM hit_totals_state", Long.class);
+
+        for (Partition partition : findPartitions()) {
+            if (partition.getTo() == null || partition.getTo().isAfter(cutoff)) {
+                continue;
+            }
+
+            Map<String, Object> stored = jdbcTemplate.queryForMap(
+                    "SELECT COUNT(*) AS hits, COALESCE(MAX(id), 0) AS max_id FROM " + partition.getName());
+            long hits = ((Number) stored.get("hits")).longValue();
+            long maxId = ((Number) stored.get("max_id")).longValue();
+
+            Long rolledUp = partition.getFrom() == null
+                    ? jdbcTemplate.queryForObject("""
+                            SELECT COALESCE(SUM(hits), 0) FROM hit_rollups
+                            WHERE granularity = 'DAY' AND bucket_start < ?
+                            """, Long.class, partition.getTo())
+                    : jdbcTemplate.queryForObject("""
+                            SELECT COALESCE(SUM(hits), 0) FROM hit_rollups
+                            WHERE granularity = 'DAY' AND bucket_start >= ? AND bucket_start < ?
+                            """, Long.class, partition.getFrom(), partition.getTo());
+
+            if (rolledUp == null || rolledUp != hits || snapshotted == null || maxId > snapshotted) {
+                log.warn("Hit partition {} is past retention but not fully rolled up ({} hits, {} in rollups)",
+                        partition.getName(), hits, rolledUp);
+                continue;
+            }
+
+            jdbcTemplate.execute("DROP TABLE " + partition.getName());
+            log.info("Dropped hit partition {} with {} hits before {}", partition.getName(), hits, partition.getTo());
+        }
+    }
+
+    /**
+     * Range partitions of endpoint_hits; the default partition is not included.
+     */
+    private List<Partition> findPartitions() {
+        return jdbcTemplate.query("""
+                        SELECT c.relname::text, pg_get_expr(c.relpartbound, c.oid)
+                        FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = to_regclass(?)
+                        """,
+                        (rs, rowNum) -> toPartition(rs.getString(1), rs.getString(2)),
+                        TABLE)
+                .stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static Partition toPartition(String name, String bound) {
+        Matcher matcher = RANGE.matcher(bound);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new Partition(name, parseBound(matcher.group(1)), parseBound(matcher.group(2)));
+    }
+
+    /**
+     * Null for MINVALUE/MAXVALUE.
+     */
+    private static LocalDateTime parseBound(String value) {
+        if (!value.startsWith("'")) {
+            return null;
+        }
+        return LocalDateTime.parse(value.substring(1, value.length() - 1), BOUND);
+    }
+
+    private static LocalDateTime monthStart(LocalDate date) {
+        return date.withDayOfMonth(1).atStartOfDay();
+    }
+
+    /**
+     * Runs DDL statements in one transaction on a connection of its own:
+     * the JPA transaction manager does not exist yet at startup.
+     */
+    private void executeInTransaction(String... statements) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Partition {
+        private final String name;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+    }
+
+    /**
+     * Makes the EntityManagerFactory, and with it the Hibernate schema update,
+     * wait for the partitioned table.
+     */
+    @Component
+    static class EntityManagerFactoryDependsOnHitPartitions extends EntityManagerFactoryDependsOnPostProcessor {
+        EntityManagerFactoryDependsOnHitPartitions() {
+            super(HitPartitionManager.class);
+        }
+    }
+}
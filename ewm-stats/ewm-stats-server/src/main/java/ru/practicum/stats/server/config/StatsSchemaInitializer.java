@@ -0,0 +1,218 @@
+package ru.practicum.stats.server.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.model.HitRollupId;
+import ru.practicum.stats.server.model.RollupGranularity;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+import ru.practicum.stats.server.service.IpDictionary;
+import ru.practicum.stats.server.service.NameDictionaries;
+import ru.practicum.stats.server.sketch.IpBitmaps;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings existing data in line with the current schema. Runs after the schema
+ * update (it depends on the EntityManagerFactory) and before the web server accepts requests:
+ * moves endpoint_hits_seq past the ids written while the id was IDENTITY-generated,
+ * replaces the app, uri and ip strings of old hits with dictionary ids,
+ * adds the unique (hit_id, created) index behind hit deduplication,
+ * builds hit_rollups from the raw hits on the first start with rollups,
+ * and fills in the HyperLogLog sketches and IP bitmaps of rollups created before they existed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatsSchemaInitializer {
+
+    private static final int MIGRATION_CHUNK = 1000;
+
+    /**
+     * Adds the distinct values of a string column of endpoint_hits missing from a dictionary.
+     */
+    private static final String FILL_DICTIONARY_SQL = """
+            INSERT INTO %1$s (id, %2$s)
+            SELECT (SELECT COALESCE(MAX(id), 0) FROM %1$s) + ROW_NUMBER() OVER (ORDER BY v), v
+            FROM (SELECT DISTINCT %3$s AS v FROM endpoint_hits
+                  WHERE %3$s IS NOT NULL
+                    AND %3$s NOT IN (SELECT %2$s FROM %1$s)) t
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final HitRollupJdbcRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final IpDictionary ipDictionary;
+    private final NameDictionaries nameDictionaries;
+
+    @PostConstruct
+    public void initialize() {
+        alignHitSequence();
+        migrateToDictionaries();
+        jdbcTemplate.execute(
+                "CREATE INDEX IF NOT EXISTS endpoint_hits_uri_id_created_idx ON endpoint_hits (uri_id, created)");
+        // created is part of the key because a unique index on a partitioned table must include it
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS endpoint_hits_hit_id_created_idx"
+                + " ON endpoint_hits (hit_id, created)");
+        backfillRollups();
+    }
+
+    private void backfillRollups() {
+        if (rollupRepository.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> rollupRepository.backfill());
+        }
+        if (rollupRepository.hasMissingSketches()) {
+            transactionTemplate.executeWithoutResult(status -> rollupRepository.backfillSketches());
+        }
+        if (rollupRepository.hasMissingBitmaps()) {
+            transactionTemplate.executeWithoutResult(status -> backfillBitmaps());
+        }
+    }
+
+    /**
+     * Builds IP bitmaps of the DAY rollups that have none, one day of raw hits at a time.
+     */
+    private void backfillBitmaps() {
+        Map<HitRollupId, RoaringBitmap> bitmaps = new HashMap<>();
+        LocalDateTime[] currentDay = new LocalDateTime[1];
+        long[] filled = new long[1];
+
+        rollupRepository.forEachHitInTimeOrder((app, uri, created, ipId, ip) -> {
+            LocalDateTime day = RollupGranularity.DAY.floor(created);
+            if (!day.equals(currentDay[0])) {
+                filled[0] += flushBitmaps(bitmaps);
+                currentDay[0] = day;
+            }
+            bitmaps.computeIfAbsent(new HitRollupId(RollupGranularity.DAY, app, uri, day), key -> new RoaringBitmap())
+                    .add(ipId);
+        });
+        filled[0] += flushBitmaps(bitmaps);
+
+        log.info("Backfilled {} rollup IP bitmaps", filled[0]);
+    }
+
+    private int flushBitmaps(Map<HitRollupId, RoaringBitmap> bitmaps) {
+        Map<HitRollupId, byte[]> serialized = new HashMap<>();
+        bitmaps.forEach((key, bitmap) -> serialized.put(key, IpBitmaps.toBytes(bitmap)));
+        bitmaps.clear();
+        return rollupRepository.fillMissingBitmaps(serialized);
+    }
+
+    /**
+     * Moves hits written before the dictionaries existed from the app, uri and ip
+     * strings to dictionary ids, then drops the string columns.
+     * Every step skips rows already done, so an interrupted run is simply repeated.
+     */
+    private void migrateToDictionaries() {
+        if (!hasHitColumn("app")) {
+            return;
+        }
+
+        log.info("Moving endpoint_hits to dictionary ids");
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(FILL_DICTIONARY_SQL.formatted("app_dictionary", "name", "app"));
+            jdbcTemplate.update(FILL_DICTIONARY_SQL.formatted("uri_dictionary", "uri", "uri"));
+            jdbcTemplate.update("""
+                    UPDATE endpoint_hits
+                    SET app_id = (SELECT d.id FROM app_dictionary d WHERE d.name = endpoint_hits.app),
+                        uri_id = (SELECT d.id FROM uri_dictionary d WHERE d.uri = endpoint_hits.uri)
+                    WHERE app_id IS NULL
+                    """);
+            migrateIps();
+            for (String column : List.of("app", "uri", "ip")) {
+                jdbcTemplate.execute("ALTER TABLE endpoint_hits DROP COLUMN " + column);
+            }
+        });
+
+        // the dictionaries were filled behind their backs
+        nameDictionaries.invalidate();
+        ipDictionary.invalidate();
+        log.info("endpoint_hits moved to dictionary ids");
+    }
+
+    /**
+     * IP encoding happens in Java, so the text to id mapping goes through a scratch table
+     * that the UPDATE can join on.
+     */
+    private void migrateIps() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS ip_migration");
+        jdbcTemplate.execute("CREATE TABLE ip_migration (ip VARCHAR(255) PRIMARY KEY, id INTEGER NOT NULL)");
+
+        List<String> chunk = new ArrayList<>(MIGRATION_CHUNK);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT DISTINCT ip FROM endpoint_hits WHERE ip IS NOT NULL");
+            statement.setFetchSize(MIGRATION_CHUNK);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            chunk.add(rs.getString(1));
+            if (chunk.size() == MIGRATION_CHUNK) {
+                flushIps(chunk);
+            }
+        });
+        flushIps(chunk);
+
+        jdbcTemplate.update("""
+                UPDATE endpoint_hits
+                SET ip_id = (SELECT m.id FROM ip_migration m WHERE m.ip = endpoint_hits.ip)
+                WHERE ip_id IS NULL
+                """);
+        jdbcTemplate.execute("DROP TABLE ip_migration");
+    }
+
+    private void flushIps(List<String> ips) {
+        List<Object[]> rows = new ArrayList<>(ips.size());
+        ipDictionary.resolve(ips).forEach((ip, id) -> rows.add(new Object[]{ip, id}));
+        jdbcTemplate.batchUpdate("INSERT INTO ip_migration (ip, id) VALUES (?, ?)", rows);
+        ips.clear();
+    }
+
+    private boolean hasHitColumn(String column) {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.columns
+                WHERE LOWER(table_name) = 'endpoint_hits' AND LOWER(column_name) = ?
+                """, Integer.class, column);
+        return count != null && count > 0;
+    }
+
+    private void alignHitSequence() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM endpoint_hits", Long.class);
+        long next = (maxId == null ? 0 : maxId) + EndpointHit.ID_ALLOCATION_SIZE;
+
+        if ("PostgreSQL".equalsIgnoreCase(database)) {
+            jdbcTemplate.queryForObject(
+                    "SELECT setval('endpoint_hits_seq', GREATEST(?, (SELECT last_value FROM endpoint_hits_seq)))",
+                    Long.class, next);
+        } else if ("H2".equalsIgnoreCase(database)) {
+            Long current = jdbcTemplate.queryForObject("""
+                    SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES
+                    WHERE UPPER(SEQUENCE_NAME) = 'ENDPOINT_HITS_SEQ'
+                    """, Long.class);
+            if (current == null || current < next) {
+                jdbcTemplate.execute("ALTER SEQUENCE endpoint_hits_seq RESTART WITH " + next);
+            }
+        } else {
+            log.warn("Hit id sequence not aligned for database {}", database);
+            return;
+        }
+
+        log.info("Hit id sequence aligned: max id {}", maxId);
+    }
+}
@@ -1,15 +1,30 @@
 package ru.practicum.stats.server.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.TopViewStatsDto;
 import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.exceptions.ValidationException;
+import ru.practicum.stats.server.service.StatsPage;
 import ru.practicum.stats.server.service.StatsService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static ru.practicum.stats.constants.FormatConstants.DATE_TIME_PATTERN;
@@ -19,7 +34,10 @@ import static ru.practicum.stats.constants.FormatConstants.DATE_TIME_PATTERN;
 @Slf4j
 public class StatsController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -28,19 +46,107 @@ public class StatsController {
         statsService.saveHit(dto);
     }
 
+    @PostMapping(value = "/hit/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHits(@RequestBody List<EndpointHitDto> hits) {
+        log.info("POST /hit/batch — {} hits", hits.size());
+        statsService.saveHits(hits);
+    }
+
+    /**
+     * Same as the JSON array variant, but reads one hit per line. The whole stream
+     * is read before anything is stored, so a request with a malformed line stores
+     * nothing and can be retried as is.
+     */
+    @PostMapping(value = "/hit/batch", consumes = "application/x-ndjson")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHitsNdjson(InputStream body) throws IOException {
+        List<EndpointHitDto> hits = new ArrayList<>();
+
+        try (MappingIterator<EndpointHitDto> lines =
+                     objectMapper.readerFor(EndpointHitDto.class).readValues(body)) {
+            while (lines.hasNextValue()) {
+                hits.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Malformed NDJSON hit after " + hits.size()
+                    + " lines, no hits were stored: " + e.getOriginalMessage());
+        }
+
+        log.info("POST /hit/batch (ndjson) — {} hits", hits.size());
+        statsService.saveHits(hits);
+    }
+
+    /**
+     * With limit, returns at most limit rows and, when the page is full, the cursor of the
+     * next page in the X-Next-Cursor header; pass it back as cursor to continue.
+     */
     @GetMapping("/stats")
-    public List<ViewStatsDto> getStats(@RequestParam
-                                       @DateTimeFormat(pattern = DATE_TIME_PATTERN)
-                                       LocalDateTime start,
-                                       @RequestParam
-                                       @DateTimeFormat(pattern = DATE_TIME_PATTERN)
-                                       LocalDateTime end,
-                                       @RequestParam(required = false) List<String> uris,
-                                       @RequestParam(defaultValue = "false") Boolean unique) {
-
-        log.info("GET /stats — start={}, end={}, uris={}, unique={}",
-                start, end, uris, unique);
-
-        return statsService.getStats(start, end, uris, unique);
+    public ResponseEntity<List<ViewStatsDto>> getStats(@RequestParam
+                                                       @DateTimeFormat(pattern = DATE_TIME_PATTERN)
+                                                       LocalDateTime start,
+                                                       @RequestParam
+                                                       @DateTimeFormat(pattern = DATE_TIME_PATTERN)
+                                                       LocalDateTime end,
+                                                       @RequestParam(required = false) List<String> uris,
+                                                       @RequestParam(defaultValue = "false") Boolean unique,
+                                                       @RequestParam(defaultValue = "false") Boolean approximate,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String cursor) {
+
+        log.info("GET /stats — start={}, end={}, uris={}, unique={}, approximate={}, limit={}, cursor={}",
+                start, end, uris, unique, approximate, limit, cursor);
+
+        StatsPage page = StatsPage.of(limit, cursor);
+        List<ViewStatsDto> stats = statsService.getStats(start, end, uris, unique, approximate, page);
+
+        String nextCursor = page.nextCursor(stats);
+        if (nextCursor == null) {
+            return ResponseEntity.ok(stats);
+        }
+        return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, nextCursor).body(stats);
+    }
+
+    /**
+     * Approximate top k uris of the last 5m, 1h or 24h with error bounds; served from memory.
+     */
+    @GetMapping("/stats/top")
+    public List<TopViewStatsDto> getTop(@RequestParam(defaultValue = "10") int k,
+                                        @RequestParam(defaultValue = "1h") String window) {
+        log.info("GET /stats/top — k={}, window={}", k, window);
+        return statsService.getTop(k, window);
+    }
+
+    /**
+     * Same as GET /stats, but for Accept: application/x-ndjson writes one row per line
+     * while they are read from the database. Meant for large results such as
+     * all uris of a long period; approximate is accepted and ignored, counts are exact.
+     */
+    @GetMapping(value = "/stats", produces = "application/x-ndjson")
+    public void getStatsNdjson(@RequestParam
+                               @DateTimeFormat(pattern = DATE_TIME_PATTERN)
+                               LocalDateTime start,
+                               @RequestParam
+                               @DateTimeFormat(pattern = DATE_TIME_PATTERN)
+                               LocalDateTime end,
+                               @RequestParam(required = false) List<String> uris,
+                               @RequestParam(defaultValue = "false") Boolean unique,
+                               HttpServletResponse response) throws IOException {
+
+        log.info("GET /stats (ndjson) — start={}, end={}, uris={}, unique={}", start, end, uris, unique);
+
+        response.setContentType("application/x-ndjson");
+        OutputStream out = response.getOutputStream();
+        ObjectWriter writer = objectMapper.writerFor(ViewStatsDto.class);
+
+        statsService.streamStats(start, end, uris, unique, row -> {
+            try {
+                out.write(writer.writeValueAsBytes(row));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
     }
 }
\ No newline at end of file
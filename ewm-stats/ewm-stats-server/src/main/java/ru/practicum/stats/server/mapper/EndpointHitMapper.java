@@ -14,6 +14,7 @@ public class EndpointHitMapper {
                 .uri(dto.getUri())
                 .ip(dto.getIp())
                 .timestamp(dto.getTimestamp())
+                .hitId(dto.getHitId())
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package ru.practicum.stats.server.mapper;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary form of visitor addresses stored in ip_dictionary: a type byte followed by
+ * the 4 or 16 address bytes, or by the UTF-8 text for values that are not IP literals.
+ * Never resolves host names.
+ */
+public class IpAddressMapper {
+
+    private static final byte RAW = 0;
+    private static final byte IPV4 = 4;
+    private static final byte IPV6 = 6;
+
+    public static byte[] encode(String ip) {
+        byte[] v4 = parseIpv4(ip);
+        if (v4 != null) {
+            return withType(IPV4, v4);
+        }
+
+        if (ip.indexOf(':') >= 0) {
+            try {
+                byte[] address = InetAddress.getByName(ip).getAddress();
+                return withType(address.length == 4 ? IPV4 : IPV6, address);
+            } catch (UnknownHostException e) {
+                // not a valid IPv6 literal, stored as text
+            }
+        }
+
+        return withType(RAW, ip.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(byte[] encoded) {
+        byte[] address = Arrays.copyOfRange(encoded, 1, encoded.length);
+        if (encoded[0] == RAW) {
+            return new String(address, StandardCharsets.UTF_8);
+        }
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Corrupted IP address of length " + address.length, e);
+        }
+    }
+
+    /**
+     * The text an address is read back as, e.g. "::1" becomes "0:0:0:0:0:0:0:1".
+     * Sketches are built from this form so that raw hits and stored sketches agree.
+     */
+    public static String canonical(String ip) {
+        return decode(encode(ip));
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || !part.chars().allMatch(Character::isDigit)) {
+                return null;
+            }
+            int value = Integer.parseInt(part);
+            if (value > 255) {
+                return null;
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+
+    private static byte[] withType(byte type, byte[] address) {
+        byte[] encoded = new byte[address.length + 1];
+        encoded[0] = type;
+        System.arraycopy(address, 0, encoded, 1, address.length);
+        return encoded;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Small integer id of an app name, stored in endpoint_hits instead of the name.
+ * Ids are assigned by NameDictionaries.
+ */
+@Entity
+@Table(name = "app_dictionary")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AppDictionaryEntry {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false, unique = true)
+    private String name;
+}
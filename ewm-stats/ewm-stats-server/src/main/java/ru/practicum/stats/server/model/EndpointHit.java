@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "endpoint_hits")
@@ -14,16 +15,45 @@ import java.time.LocalDateTime;
 @Builder
 public class EndpointHit {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * Sequence with a pooled allocation, so Hibernate can batch inserts
+     * (IDENTITY forces one round trip per row).
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "endpoint_hits_seq")
+    @SequenceGenerator(name = "endpoint_hits_seq", sequenceName = "endpoint_hits_seq",
+            allocationSize = EndpointHit.ID_ALLOCATION_SIZE)
     private Long id;
 
+    /**
+     * Dictionary ids written to the table; set by HitBatchWriter from app, uri and ip.
+     */
+    @Column(name = "app_id")
+    private Integer appId;
+
+    @Column(name = "uri_id")
+    private Integer uriId;
+
+    @Column(name = "ip_id")
+    private Integer ipId;
+
+    @Transient
     private String app;
 
+    @Transient
     private String uri;
 
+    @Transient
     private String ip;
 
     @Column(name = "created", nullable = false)
     private LocalDateTime timestamp;
+
+    /**
+     * Client-generated id used to skip retried hits; unique together with created.
+     */
+    @Column(name = "hit_id")
+    private UUID hitId;
 }
\ No newline at end of file
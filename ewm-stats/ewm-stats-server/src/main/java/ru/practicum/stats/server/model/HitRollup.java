@@ -0,0 +1,51 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Number of hits of one app and uri within one time bucket.
+ * Maintained on ingest by HitBatchWriter; the raw hits stay the source of truth.
+ */
+@Entity
+@Table(name = "hit_rollups")
+@IdClass(HitRollupId.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitRollup {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private RollupGranularity granularity;
+
+    @Id
+    private String app;
+
+    @Id
+    private String uri;
+
+    @Id
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private Long hits;
+
+    /**
+     * Serialized HyperLogLog of the visitor IPs; only for HOUR and DAY buckets.
+     */
+    @Column(name = "hll", length = 8192)
+    private byte[] hll;
+
+    /**
+     * Serialized roaring bitmap of the IpDictionary ids of the visitors; only for DAY buckets.
+     */
+    @Column(name = "ip_bitmap", length = 16_777_216)
+    private byte[] ipBitmap;
+}
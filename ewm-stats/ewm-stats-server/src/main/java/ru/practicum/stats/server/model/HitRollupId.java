@@ -0,0 +1,22 @@
+package ru.practicum.stats.server.model;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class HitRollupId implements Serializable {
+
+    private RollupGranularity granularity;
+
+    private String app;
+
+    private String uri;
+
+    private LocalDateTime bucketStart;
+}
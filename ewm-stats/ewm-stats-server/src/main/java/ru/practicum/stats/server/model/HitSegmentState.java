@@ -0,0 +1,28 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Single-row table with the last hit committed to the segment files (SegmentHitStore).
+ */
+@Entity
+@Table(name = "hit_segment_state")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitSegmentState {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    /**
+     * Id of the last segment row whose transaction committed; rows after it are dropped on open.
+     */
+    @Column(name = "last_hit_id", nullable = false)
+    private Long lastHitId;
+}
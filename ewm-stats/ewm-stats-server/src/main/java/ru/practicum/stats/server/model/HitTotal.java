@@ -0,0 +1,38 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Snapshot of the all-time counters of one app and uri kept in memory by HitTotals.
+ * Together with hit_totals_state it lets the counters be rebuilt at startup
+ * without rescanning endpoint_hits.
+ */
+@Entity
+@Table(name = "hit_totals")
+@IdClass(HitTotalId.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitTotal {
+
+    @Id
+    private String app;
+
+    @Id
+    private String uri;
+
+    @Column(nullable = false)
+    private Long hits;
+
+    @Column(name = "unique_hits", nullable = false)
+    private Long uniqueHits;
+
+    /**
+     * Serialized roaring bitmap of the IpDictionary ids of all visitors.
+     */
+    @Column(name = "visitors", length = 16_777_216)
+    private byte[] visitors;
+}
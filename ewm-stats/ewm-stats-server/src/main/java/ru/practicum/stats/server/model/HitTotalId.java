@@ -0,0 +1,17 @@
+package ru.practicum.stats.server.model;
+
+import lombok.*;
+
+import java.io.Serializable;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+public class HitTotalId implements Serializable {
+
+    private String app;
+
+    private String uri;
+}
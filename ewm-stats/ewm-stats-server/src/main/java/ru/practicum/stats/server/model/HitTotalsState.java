@@ -0,0 +1,36 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single-row table describing which hits the hit_totals snapshot includes.
+ */
+@Entity
+@Table(name = "hit_totals_state")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HitTotalsState {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    /**
+     * Largest hit id included in the snapshot; later hits are replayed at startup.
+     */
+    @Column(name = "last_hit_id", nullable = false)
+    private Long lastHitId;
+
+    @Column(name = "min_created")
+    private LocalDateTime minCreated;
+
+    @Column(name = "max_created")
+    private LocalDateTime maxCreated;
+}
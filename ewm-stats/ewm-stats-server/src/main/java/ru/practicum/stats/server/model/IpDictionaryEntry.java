@@ -0,0 +1,43 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Dense integer id of a visitor IP, used as the member of the IP bitmaps.
+ * Ids are assigned by IpDictionary, so new entries are inserted without a lookup.
+ */
+@Entity
+@Table(name = "ip_dictionary")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IpDictionaryEntry implements Persistable<Integer> {
+
+    @Id
+    private Integer id;
+
+    /**
+     * Binary form of the address, see IpAddressMapper#encode.
+     */
+    @Column(nullable = false, unique = true, length = 256)
+    private byte[] address;
+
+    @Transient
+    @Builder.Default
+    private boolean newEntry = true;
+
+    @Override
+    public boolean isNew() {
+        return newEntry;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        newEntry = false;
+    }
+}
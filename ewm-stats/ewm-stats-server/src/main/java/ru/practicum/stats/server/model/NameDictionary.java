@@ -0,0 +1,17 @@
+package ru.practicum.stats.server.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Dictionary tables mapping the strings of a hit to integer ids.
+ */
+@Getter
+@AllArgsConstructor
+public enum NameDictionary {
+    APP("app_dictionary", "name"),
+    URI("uri_dictionary", "uri");
+
+    private final String table;
+    private final String column;
+}
@@ -0,0 +1,48 @@
+package ru.practicum.stats.server.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket sizes of the hit rollups, from the finest to the coarsest.
+ * Rollups of sketched granularities also carry a HyperLogLog sketch of the visitor IPs.
+ */
+public enum RollupGranularity {
+    MINUTE(ChronoUnit.MINUTES, false),
+    HOUR(ChronoUnit.HOURS, true),
+    DAY(ChronoUnit.DAYS, true);
+
+    private final ChronoUnit unit;
+    private final boolean sketched;
+
+    RollupGranularity(ChronoUnit unit, boolean sketched) {
+        this.unit = unit;
+        this.sketched = sketched;
+    }
+
+    public boolean isSketched() {
+        return sketched;
+    }
+
+    /**
+     * Start of the bucket containing the given moment.
+     */
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * First bucket boundary at or after the given moment.
+     */
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+
+    /**
+     * Unit name understood by DATE_TRUNC.
+     */
+    public String sqlUnit() {
+        return name().toLowerCase();
+    }
+}
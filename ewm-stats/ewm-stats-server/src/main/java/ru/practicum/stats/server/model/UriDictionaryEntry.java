@@ -0,0 +1,24 @@
+package ru.practicum.stats.server.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Integer id of a uri, stored in endpoint_hits instead of the uri.
+ * Ids are assigned by NameDictionaries.
+ */
+@Entity
+@Table(name = "uri_dictionary")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UriDictionaryEntry {
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false, unique = true)
+    private String uri;
+}
@@ -0,0 +1,69 @@
+package ru.practicum.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.server.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Client hit ids stored in endpoint_hits, used to skip retried hits.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitIdJdbcRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Ids of the given hits that are already stored. The created range of the hits
+     * narrows the lookup to the partitions they belong to.
+     */
+    public Set<UUID> findStored(Collection<EndpointHit> hits) {
+        Set<UUID> ids = new HashSet<>();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (EndpointHit hit : hits) {
+            ids.add(hit.getHitId());
+            from = from == null || hit.getTimestamp().isBefore(from) ? hit.getTimestamp() : from;
+            to = to == null || hit.getTimestamp().isAfter(to) ? hit.getTimestamp() : to;
+        }
+
+        Set<UUID> stored = new HashSet<>();
+        if (ids.isEmpty()) {
+            return stored;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        namedJdbcTemplate.query("""
+                        SELECT hit_id FROM endpoint_hits
+                        WHERE hit_id IN (:ids)
+                          AND created BETWEEN :from AND :to
+                        """, params,
+                (RowCallbackHandler) rs -> stored.add(rs.getObject(1, UUID.class)));
+        return stored;
+    }
+
+    /**
+     * Passes the ids of hits created at or after from.
+     */
+    public void forEachIdSince(LocalDateTime from, Consumer<UUID> consumer) {
+        namedJdbcTemplate.query("""
+                        SELECT hit_id FROM endpoint_hits
+                        WHERE created >= :from
+                          AND hit_id IS NOT NULL
+                        """, new MapSqlParameterSource("from", Timestamp.valueOf(from)),
+                (RowCallbackHandler) rs -> consumer.accept(rs.getObject(1, UUID.class)));
+    }
+}
@@ -0,0 +1,362 @@
+package ru.practicum.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.server.mapper.IpAddressMapper;
+import ru.practicum.stats.server.model.HitRollupId;
+import ru.practicum.stats.server.model.RollupGranularity;
+import ru.practicum.stats.server.sketch.HyperLogLog;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Access to hit_rollups that JPA cannot express: incremental upserts, sketch
+ * reads and writes, and the backfills. Plain SQL understood by PostgreSQL 15+ and H2.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class HitRollupJdbcRepository {
+
+    private static final String MERGE_SQL = """
+            MERGE INTO hit_rollups r
+            USING (VALUES (CAST(? AS VARCHAR(10)), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)),
+                           CAST(? AS TIMESTAMP), CAST(? AS BIGINT)))
+                  AS s (granularity, app, uri, bucket_start, hits)
+            ON r.granularity = s.granularity
+               AND r.app = s.app
+               AND r.uri = s.uri
+               AND r.bucket_start = s.bucket_start
+            WHEN MATCHED THEN
+                UPDATE SET hits = r.hits + s.hits
+            WHEN NOT MATCHED THEN
+                INSERT (granularity, app, uri, bucket_start, hits)
+                VALUES (s.granularity, s.app, s.uri, s.bucket_start, s.hits)
+            """;
+
+    private static final String BACKFILL_SQL = """
+            INSERT INTO hit_rollups (granularity, app, uri, bucket_start, hits)
+            SELECT '%1$s', a.name, u.uri, h.bucket_start, h.hits
+            FROM (SELECT app_id, uri_id, DATE_TRUNC('%2$s', created) AS bucket_start, COUNT(*) AS hits
+                  FROM endpoint_hits
+                  GROUP BY app_id, uri_id, DATE_TRUNC('%2$s', created)) h
+            JOIN app_dictionary a ON a.id = h.app_id
+            JOIN uri_dictionary u ON u.id = h.uri_id
+            """;
+
+    private static final int BACKFILL_FETCH_SIZE = 1000;
+
+    private static final String KEY_CONDITION =
+            "granularity = ? AND app = ? AND uri = ? AND bucket_start = ?";
+
+    private static final String SKETCHED_GRANULARITIES = "('HOUR', 'DAY')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @FunctionalInterface
+    public interface SketchConsumer {
+        void accept(String app, String uri, byte[] sketch);
+    }
+
+    /**
+     * Receives the IpDictionary id and the canonical text (see IpAddressMapper) of a visitor.
+     */
+    @FunctionalInterface
+    public interface IpConsumer {
+        void accept(String app, String uri, int ipId, String ip);
+    }
+
+    @FunctionalInterface
+    public interface RollupConsumer {
+        void accept(String app, String uri, LocalDateTime bucketStart, long hits);
+    }
+
+    @FunctionalInterface
+    public interface HitConsumer {
+        void accept(String app, String uri, LocalDateTime created, int ipId, String ip);
+    }
+
+    /**
+     * Adds the given hit counts to their buckets. Must run in the transaction storing the hits.
+     */
+    public void addHits(Map<HitRollupId, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, hits) -> rows.add(new Object[]{
+                key.getGranularity().name(),
+                key.getApp(),
+                key.getUri(),
+                Timestamp.valueOf(key.getBucketStart()),
+                hits
+        }));
+
+        jdbcTemplate.batchUpdate(MERGE_SQL, rows);
+    }
+
+    /**
+     * Stored sketch of one rollup row, or null when the row has none.
+     */
+    public byte[] findSketch(HitRollupId key) {
+        List<byte[]> sketches = jdbcTemplate.query(
+                "SELECT hll FROM hit_rollups WHERE " + KEY_CONDITION,
+                (rs, rowNum) -> rs.getBytes(1),
+                key.getGranularity().name(), key.getApp(), key.getUri(), Timestamp.valueOf(key.getBucketStart()));
+        return sketches.isEmpty() ? null : sketches.get(0);
+    }
+
+    public void updateSketches(Map<HitRollupId, byte[]> sketches) {
+        updateBytes(sketches, "UPDATE hit_rollups SET hll = ? WHERE " + KEY_CONDITION);
+    }
+
+    /**
+     * Stored IP bitmap of one DAY rollup row, or null when the row has none.
+     */
+    public byte[] findBitmap(HitRollupId key) {
+        List<byte[]> bitmaps = jdbcTemplate.query(
+                "SELECT ip_bitmap FROM hit_rollups WHERE " + KEY_CONDITION,
+                (rs, rowNum) -> rs.getBytes(1),
+                key.getGranularity().name(), key.getApp(), key.getUri(), Timestamp.valueOf(key.getBucketStart()));
+        return bitmaps.isEmpty() ? null : bitmaps.get(0);
+    }
+
+    public void updateBitmaps(Map<HitRollupId, byte[]> bitmaps) {
+        updateBytes(bitmaps, "UPDATE hit_rollups SET ip_bitmap = ? WHERE " + KEY_CONDITION);
+    }
+
+    /**
+     * Sets the bitmaps of rows that have none yet; used by the backfill.
+     */
+    public int fillMissingBitmaps(Map<HitRollupId, byte[]> bitmaps) {
+        return updateBytes(bitmaps,
+                "UPDATE hit_rollups SET ip_bitmap = ? WHERE " + KEY_CONDITION + " AND ip_bitmap IS NULL");
+    }
+
+    /**
+     * Passes the IP bitmaps of the DAY buckets starting in [from, to) to the consumer.
+     *
+     * @param uris uris to include, or null for all
+     */
+    public void forEachBitmap(LocalDateTime from,
+                              LocalDateTime to,
+                              List<String> uris,
+                              SketchConsumer consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+
+        String sql = """
+                SELECT app, uri, ip_bitmap FROM hit_rollups
+                WHERE granularity = 'DAY'
+                  AND bucket_start >= :from
+                  AND bucket_start < :to
+                  AND ip_bitmap IS NOT NULL
+                """;
+        if (uris != null) {
+            sql += " AND uri IN (:uris)";
+            params.addValue("uris", uris);
+        }
+
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                consumer.accept(rs.getString(1), rs.getString(2), rs.getBytes(3)));
+    }
+
+    public boolean hasMissingBitmaps() {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM hit_rollups WHERE granularity = 'DAY' AND ip_bitmap IS NULL)",
+                Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Streams all raw hits in time order; used by the backfills.
+     */
+    public void forEachHitInTimeOrder(HitConsumer consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("""
+                    SELECT a.name, u.uri, h.created, h.ip_id, d.address
+                    FROM endpoint_hits h
+                    JOIN app_dictionary a ON a.id = h.app_id
+                    JOIN uri_dictionary u ON u.id = h.uri_id
+                    JOIN ip_dictionary d ON d.id = h.ip_id
+                    ORDER BY h.created
+                    """);
+            statement.setFetchSize(BACKFILL_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getString(1), rs.getString(2),
+                rs.getTimestamp(3).toLocalDateTime(), rs.getInt(4), IpAddressMapper.decode(rs.getBytes(5))));
+    }
+
+    /**
+     * Passes the sketches of the buckets of one granularity starting in [from, to) to the consumer.
+     *
+     * @param uris uris to include, or null for all
+     */
+    public void forEachSketch(RollupGranularity granularity,
+                              LocalDateTime from,
+                              LocalDateTime to,
+                              List<String> uris,
+                              SketchConsumer consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+
+        String sql = """
+                SELECT app, uri, hll FROM hit_rollups
+                WHERE granularity = :granularity
+                  AND bucket_start >= :from
+                  AND bucket_start < :to
+                  AND hll IS NOT NULL
+                """;
+        if (uris != null) {
+            sql += " AND uri IN (:uris)";
+            params.addValue("uris", uris);
+        }
+
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                consumer.accept(rs.getString(1), rs.getString(2), rs.getBytes(3)));
+    }
+
+    /**
+     * Passes the hit counts of the buckets of one granularity starting at or after from to the consumer.
+     */
+    public void forEachRollupSince(RollupGranularity granularity, LocalDateTime from, RollupConsumer consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from));
+
+        namedJdbcTemplate.query("""
+                        SELECT app, uri, bucket_start, hits FROM hit_rollups
+                        WHERE granularity = :granularity
+                          AND bucket_start >= :from
+                        """, params,
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(1), rs.getString(2),
+                        rs.getTimestamp(3).toLocalDateTime(), rs.getLong(4)));
+    }
+
+    /**
+     * Passes each distinct (app, uri, ip) of the raw hits in [from, to) to the consumer.
+     *
+     * @param uris uris to include, or null for all
+     */
+    public void forEachDistinctIp(LocalDateTime from,
+                                  LocalDateTime to,
+                                  List<String> uris,
+                                  IpConsumer consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+
+        String uriCondition = "";
+        if (uris != null) {
+            uriCondition = " AND uri_id IN (SELECT id FROM uri_dictionary WHERE uri IN (:uris))";
+            params.addValue("uris", uris);
+        }
+
+        String sql = """
+                SELECT a.name, u.uri, h.ip_id, d.address
+                FROM (SELECT DISTINCT app_id, uri_id, ip_id FROM endpoint_hits
+                      WHERE created >= :from
+                        AND created < :to%s) h
+                JOIN app_dictionary a ON a.id = h.app_id
+                JOIN uri_dictionary u ON u.id = h.uri_id
+                JOIN ip_dictionary d ON d.id = h.ip_id
+                """.formatted(uriCondition);
+
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> consumer.accept(
+                rs.getString(1), rs.getString(2), rs.getInt(3), IpAddressMapper.decode(rs.getBytes(4))));
+    }
+
+    public boolean hasMissingSketches() {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM hit_rollups WHERE granularity IN " + SKETCHED_GRANULARITIES
+                        + " AND hll IS NULL)", Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Builds sketches of the HOUR and DAY rollups that have none, reading the raw hits
+     * once in time order and keeping only one day of sketches in memory.
+     */
+    public void backfillSketches() {
+        Map<HitRollupId, HyperLogLog> sketches = new HashMap<>();
+        LocalDateTime[] currentDay = new LocalDateTime[1];
+        long[] filled = new long[1];
+
+        forEachHitInTimeOrder((app, uri, created, ipId, ip) -> {
+            LocalDateTime day = RollupGranularity.DAY.floor(created);
+            if (!day.equals(currentDay[0])) {
+                filled[0] += flushMissingSketches(sketches);
+                currentDay[0] = day;
+            }
+
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                if (granularity.isSketched()) {
+                    sketches.computeIfAbsent(
+                            new HitRollupId(granularity, app, uri, granularity.floor(created)),
+                            key -> new HyperLogLog()
+                    ).add(ip);
+                }
+            }
+        });
+        filled[0] += flushMissingSketches(sketches);
+
+        log.info("Backfilled {} rollup sketches", filled[0]);
+    }
+
+    private int flushMissingSketches(Map<HitRollupId, HyperLogLog> sketches) {
+        Map<HitRollupId, byte[]> serialized = new HashMap<>();
+        sketches.forEach((key, sketch) -> serialized.put(key, sketch.toBytes()));
+        sketches.clear();
+        return updateBytes(serialized, "UPDATE hit_rollups SET hll = ? WHERE " + KEY_CONDITION + " AND hll IS NULL");
+    }
+
+    private int updateBytes(Map<HitRollupId, byte[]> values, String sql) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> rows = new ArrayList<>(values.size());
+        values.forEach((key, value) -> rows.add(new Object[]{
+                value,
+                key.getGranularity().name(),
+                key.getApp(),
+                key.getUri(),
+                Timestamp.valueOf(key.getBucketStart())
+        }));
+
+        return Arrays.stream(jdbcTemplate.batchUpdate(sql, rows)).map(count -> Math.max(count, 0)).sum();
+    }
+
+    public boolean isEmpty() {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM hit_rollups)", Boolean.class);
+        return !Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Builds all rollups from the raw hits.
+     */
+    public void backfill() {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            int rows = jdbcTemplate.update(BACKFILL_SQL.formatted(granularity.name(), granularity.sqlUnit()));
+            log.info("Backfilled {} {} rollups", rows, granularity);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.stats.server.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.model.HitRollup;
+import ru.practicum.stats.server.model.HitRollupId;
+import ru.practicum.stats.server.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface HitRollupRepository extends JpaRepository<HitRollup, HitRollupId> {
+
+    /**
+     * Hits per app and uri in the buckets of one granularity starting in [from, to).
+     */
+    @Query("""
+                SELECT new ru.practicum.stats.dto.ViewStatsDto(r.app, r.uri, SUM(r.hits))
+                FROM HitRollup r
+                WHERE r.granularity = :granularity
+                  AND r.bucketStart >= :from
+                  AND r.bucketStart < :to
+                  AND (:uris IS NULL OR r.uri IN :uris)
+                GROUP BY r.app, r.uri
+            """)
+    List<ViewStatsDto> sumHits(RollupGranularity granularity,
+                               LocalDateTime from,
+                               LocalDateTime to,
+                               List<String> uris);
+}
@@ -0,0 +1,43 @@
+package ru.practicum.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.server.model.HitSegmentState;
+
+import java.util.List;
+
+/**
+ * Commit marker of the segment files (hit_segment_state), updated in the transaction of every batch.
+ * Plain SQL understood by PostgreSQL 15+ and H2.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitSegmentJdbcRepository {
+
+    private static final String MERGE_STATE_SQL = """
+            MERGE INTO hit_segment_state st
+            USING (VALUES (CAST(? AS INTEGER), CAST(? AS BIGINT))) AS s (id, last_hit_id)
+            ON st.id = s.id
+            WHEN MATCHED THEN
+                UPDATE SET last_hit_id = s.last_hit_id
+            WHEN NOT MATCHED THEN
+                INSERT (id, last_hit_id)
+                VALUES (s.id, s.last_hit_id)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Id of the last committed segment row, or 0 before the first batch.
+     */
+    public long findLastHitId() {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT last_hit_id FROM hit_segment_state WHERE id = ?", Long.class, HitSegmentState.ID);
+        return ids.isEmpty() ? 0 : ids.get(0);
+    }
+
+    public void saveLastHitId(long lastHitId) {
+        jdbcTemplate.update(MERGE_STATE_SQL, HitSegmentState.ID, lastHitId);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.practicum.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.model.HitTotal;
+import ru.practicum.stats.server.model.HitTotalsState;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Snapshot storage of the all-time counters (hit_totals, hit_totals_state).
+ * Plain SQL understood by PostgreSQL 15+ and H2.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitTotalsJdbcRepository {
+
+    private static final String MERGE_TOTAL_SQL = """
+            MERGE INTO hit_totals t
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), CAST(? AS BIGINT)))
+                  AS s (app, uri, hits, unique_hits)
+            ON t.app = s.app
+               AND t.uri = s.uri
+            WHEN MATCHED THEN
+                UPDATE SET hits = s.hits, unique_hits = s.unique_hits
+            WHEN NOT MATCHED THEN
+                INSERT (app, uri, hits, unique_hits)
+                VALUES (s.app, s.uri, s.hits, s.unique_hits)
+            """;
+
+    private static final String MERGE_STATE_SQL = """
+            MERGE INTO hit_totals_state st
+            USING (VALUES (CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP)))
+                  AS s (id, last_hit_id, min_created, max_created)
+            ON st.id = s.id
+            WHEN MATCHED THEN
+                UPDATE SET last_hit_id = s.last_hit_id, min_created = s.min_created, max_created = s.max_created
+            WHEN NOT MATCHED THEN
+                INSERT (id, last_hit_id, min_created, max_created)
+                VALUES (s.id, s.last_hit_id, s.min_created, s.max_created)
+            """;
+
+    private static final int REPLAY_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Snapshot state, or null before the first snapshot.
+     */
+    public HitTotalsState findState() {
+        List<HitTotalsState> states = jdbcTemplate.query(
+                "SELECT last_hit_id, min_created, max_created FROM hit_totals_state WHERE id = ?",
+                (rs, rowNum) -> HitTotalsState.builder()
+                        .id(HitTotalsState.ID)
+                        .lastHitId(rs.getLong(1))
+                        .minCreated(toLocalDateTime(rs.getTimestamp(2)))
+                        .maxCreated(toLocalDateTime(rs.getTimestamp(3)))
+                        .build(),
+                HitTotalsState.ID);
+        return states.isEmpty() ? null : states.get(0);
+    }
+
+    public void forEachTotal(Consumer<HitTotal> consumer) {
+        jdbcTemplate.query("SELECT app, uri, hits, unique_hits, visitors FROM hit_totals",
+                (RowCallbackHandler) rs -> consumer.accept(HitTotal.builder()
+                        .app(rs.getString(1))
+                        .uri(rs.getString(2))
+                        .hits(rs.getLong(3))
+                        .uniqueHits(rs.getLong(4))
+                        .visitors(rs.getBytes(5))
+                        .build()));
+    }
+
+    /**
+     * Streams the hits with ids above the given one in id order, with app and uri but without the IP text.
+     */
+    public void forEachHitAfter(long lastHitId, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("""
+                    SELECT h.id, a.name, u.uri, h.ip_id, h.created
+                    FROM endpoint_hits h
+                    JOIN app_dictionary a ON a.id = h.app_id
+                    JOIN uri_dictionary u ON u.id = h.uri_id
+                    WHERE h.id > ?
+                    ORDER BY h.id
+                    """);
+            statement.setLong(1, lastHitId);
+            statement.setFetchSize(REPLAY_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(EndpointHit.builder()
+                .id(rs.getLong(1))
+                .app(rs.getString(2))
+                .uri(rs.getString(3))
+                .ipId(rs.getInt(4))
+                .timestamp(rs.getTimestamp(5).toLocalDateTime())
+                .build()));
+    }
+
+    /**
+     * Writes changed totals and the state describing them. Must run in one transaction.
+     */
+    public void saveSnapshot(List<HitTotal> totals, HitTotalsState state) {
+        if (!totals.isEmpty()) {
+            List<Object[]> counts = new ArrayList<>(totals.size());
+            List<Object[]> visitors = new ArrayList<>(totals.size());
+            for (HitTotal total : totals) {
+                counts.add(new Object[]{total.getApp(), total.getUri(), total.getHits(), total.getUniqueHits()});
+                visitors.add(new Object[]{total.getVisitors(), total.getApp(), total.getUri()});
+            }
+            jdbcTemplate.batchUpdate(MERGE_TOTAL_SQL, counts);
+            jdbcTemplate.batchUpdate("UPDATE hit_totals SET visitors = ? WHERE app = ? AND uri = ?", visitors);
+        }
+
+        jdbcTemplate.update(MERGE_STATE_SQL,
+                HitTotalsState.ID,
+                state.getLastHitId(),
+                toTimestamp(state.getMinCreated()),
+                toTimestamp(state.getMaxCreated()));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+}
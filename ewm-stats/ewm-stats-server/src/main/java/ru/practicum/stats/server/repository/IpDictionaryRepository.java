@@ -0,0 +1,18 @@
+package ru.practicum.stats.server.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.server.model.IpDictionaryEntry;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface IpDictionaryRepository extends JpaRepository<IpDictionaryEntry, Integer> {
+
+    List<IpDictionaryEntry> findAllByAddressIn(Collection<byte[]> addresses);
+
+    @Query("SELECT COALESCE(MAX(d.id), 0) FROM IpDictionaryEntry d")
+    int findMaxId();
+}
@@ -0,0 +1,78 @@
+package ru.practicum.stats.server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.server.model.NameDictionary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads and inserts app_dictionary and uri_dictionary rows.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NameDictionaryJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public Map<String, Integer> findIds(NameDictionary dictionary, Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (names.isEmpty()) {
+            return ids;
+        }
+
+        String sql = "SELECT %1$s, id FROM %2$s WHERE %1$s IN (:names)"
+                .formatted(dictionary.getColumn(), dictionary.getTable());
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource("names", names),
+                (RowCallbackHandler) rs -> ids.put(rs.getString(1), rs.getInt(2)));
+        return ids;
+    }
+
+    public Map<Integer, String> findNames(NameDictionary dictionary, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+
+        String sql = "SELECT id, %s FROM %s WHERE id IN (:ids)"
+                .formatted(dictionary.getColumn(), dictionary.getTable());
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource("ids", ids),
+                (RowCallbackHandler) rs -> names.put(rs.getInt(1), rs.getString(2)));
+        return names;
+    }
+
+    /**
+     * Passes every name of the dictionary to the consumer.
+     */
+    public void forEachName(NameDictionary dictionary, Consumer<String> consumer) {
+        jdbcTemplate.query("SELECT %s FROM %s".formatted(dictionary.getColumn(), dictionary.getTable()),
+                (RowCallbackHandler) rs -> consumer.accept(rs.getString(1)));
+    }
+
+    public int findMaxId(NameDictionary dictionary) {
+        Integer maxId = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM " + dictionary.getTable(), Integer.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    public void insert(NameDictionary dictionary, Map<String, Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        ids.forEach((name, id) -> rows.add(new Object[]{id, name}));
+        jdbcTemplate.batchUpdate("INSERT INTO %s (id, %s) VALUES (?, ?)"
+                .formatted(dictionary.getTable(), dictionary.getColumn()), rows);
+    }
+}
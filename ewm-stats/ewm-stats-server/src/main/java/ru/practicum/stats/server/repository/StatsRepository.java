@@ -9,15 +9,20 @@ import ru.practicum.stats.server.model.EndpointHit;
 import java.time.LocalDateTime;
 import java.util.List;
 
+/**
+ * Raw hit queries. Hits store dictionary ids, app names and uris are joined back in.
+ */
 @Repository
 public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
 
     @Query("""
-                SELECT new ru.practicum.stats.dto.ViewStatsDto(e.app, e.uri, COUNT(e))
+                SELECT new ru.practicum.stats.dto.ViewStatsDto(a.name, u.uri, COUNT(e))
                 FROM EndpointHit e
+                JOIN AppDictionaryEntry a ON a.id = e.appId
+                JOIN UriDictionaryEntry u ON u.id = e.uriId
                 WHERE e.timestamp BETWEEN :start AND :end
-                  AND (:uris IS NULL OR e.uri IN :uris)
-                GROUP BY e.app, e.uri
+                  AND (:uris IS NULL OR u.uri IN :uris)
+                GROUP BY a.name, u.uri
                 ORDER BY COUNT(e) DESC
             """)
     List<ViewStatsDto> getStats(LocalDateTime start,
@@ -25,32 +30,55 @@ public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
                                 List<String> uris);
 
     @Query("""
-                SELECT new ru.practicum.stats.dto.ViewStatsDto(e.app, e.uri, COUNT(DISTINCT e.ip))
+                SELECT new ru.practicum.stats.dto.ViewStatsDto(a.name, u.uri, COUNT(DISTINCT e.ipId))
                 FROM EndpointHit e
+                JOIN AppDictionaryEntry a ON a.id = e.appId
+                JOIN UriDictionaryEntry u ON u.id = e.uriId
                 WHERE e.timestamp BETWEEN :start AND :end
-                  AND (:uris IS NULL OR e.uri IN :uris)
-                GROUP BY e.app, e.uri
-                ORDER BY COUNT(DISTINCT e.ip) DESC
+                  AND (:uris IS NULL OR u.uri IN :uris)
+                GROUP BY a.name, u.uri
+                ORDER BY COUNT(DISTINCT e.ipId) DESC
             """)
     List<ViewStatsDto> getStatsUnique(LocalDateTime start,
                                       LocalDateTime end,
                                       List<String> uris);
 
     @Query("""
-                SELECT new ru.practicum.stats.dto.ViewStatsDto(e.app, e.uri, COUNT(e))
+                SELECT new ru.practicum.stats.dto.ViewStatsDto(a.name, u.uri, COUNT(e))
                 FROM EndpointHit e
+                JOIN AppDictionaryEntry a ON a.id = e.appId
+                JOIN UriDictionaryEntry u ON u.id = e.uriId
                 WHERE e.timestamp BETWEEN :start AND :end
-                GROUP BY e.app, e.uri
+                GROUP BY a.name, u.uri
                 ORDER BY COUNT(e) DESC
             """)
     List<ViewStatsDto> getStatsNoUri(LocalDateTime start, LocalDateTime end);
 
     @Query("""
-                SELECT new ru.practicum.stats.dto.ViewStatsDto(e.app, e.uri, COUNT(DISTINCT e.ip))
+                SELECT new ru.practicum.stats.dto.ViewStatsDto(a.name, u.uri, COUNT(DISTINCT e.ipId))
                 FROM EndpointHit e
+                JOIN AppDictionaryEntry a ON a.id = e.appId
+                JOIN UriDictionaryEntry u ON u.id = e.uriId
                 WHERE e.timestamp BETWEEN :start AND :end
-                GROUP BY e.app, e.uri
-                ORDER BY COUNT(DISTINCT e.ip) DESC
+                GROUP BY a.name, u.uri
+                ORDER BY COUNT(DISTINCT e.ipId) DESC
             """)
     List<ViewStatsDto> getStatsUniqueNoUri(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Hits per app and uri with timestamps in [from, to); used for the edges of a rollup plan.
+     */
+    @Query("""
+                SELECT new ru.practicum.stats.dto.ViewStatsDto(a.name, u.uri, COUNT(e))
+                FROM EndpointHit e
+                JOIN AppDictionaryEntry a ON a.id = e.appId
+                JOIN UriDictionaryEntry u ON u.id = e.uriId
+                WHERE e.timestamp >= :from
+                  AND e.timestamp < :to
+                  AND (:uris IS NULL OR u.uri IN :uris)
+                GROUP BY a.name, u.uri
+            """)
+    List<ViewStatsDto> countHits(LocalDateTime from,
+                                 LocalDateTime to,
+                                 List<String> uris);
 }
\ No newline at end of file
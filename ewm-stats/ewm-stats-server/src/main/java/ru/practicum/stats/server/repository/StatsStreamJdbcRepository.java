@@ -0,0 +1,191 @@
+package ru.practicum.stats.server.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.service.StatsPage;
+import ru.practicum.stats.server.service.StatsRangePlan;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stats queries aggregated and sorted entirely in the database, read through a
+ * forward-only cursor so that rows can be passed on as they arrive.
+ * On PostgreSQL the cursor only streams inside a transaction.
+ */
+@Repository
+public class StatsStreamJdbcRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Collation that orders app and uri like String.compareTo in StatsPage.ORDER: PostgreSQL's
+     * "C" (code point order, the same except for characters outside the BMP), while H2 already
+     * compares strings that way by default.
+     */
+    private final String collate;
+
+    public StatsStreamJdbcRepository(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        this.collate = "PostgreSQL".equalsIgnoreCase(database) ? " COLLATE \"C\"" : "";
+    }
+
+    /**
+     * Hits per app and uri for a planned range: whole rollup buckets plus raw hits at the edges,
+     * summed in one query. Rows come sorted by hits desc, then app and uri.
+     * The page cursor and limit go into the query (HAVING seek and LIMIT), so the database
+     * only keeps the top rows while sorting.
+     *
+     * @param uris uris to include, or null for all
+     */
+    public void streamHits(StatsRangePlan plan,
+                           List<String> uris,
+                           StatsPage page,
+                           Consumer<ViewStatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        List<String> parts = new ArrayList<>();
+
+        if (uris != null) {
+            params.addValue("uris", uris);
+        }
+
+        List<String> rollupConditions = new ArrayList<>();
+        for (StatsRangePlan.Segment segment : plan.getRollupSegments()) {
+            int i = rollupConditions.size();
+            rollupConditions.add("(granularity = :g%1$d AND bucket_start >= :gf%1$d AND bucket_start < :gt%1$d)"
+                    .formatted(i));
+            params.addValue("g" + i, segment.getGranularity().name())
+                    .addValue("gf" + i, Timestamp.valueOf(segment.getFrom()))
+                    .addValue("gt" + i, Timestamp.valueOf(segment.getTo()));
+        }
+        if (!rollupConditions.isEmpty()) {
+            parts.add("SELECT app, uri, hits FROM hit_rollups WHERE (" + String.join(" OR ", rollupConditions) + ")"
+                    + (uris != null ? " AND uri IN (:uris)" : ""));
+        }
+
+        List<String> rawConditions = new ArrayList<>();
+        for (StatsRangePlan.Segment segment : plan.getRawSegments()) {
+            int i = rawConditions.size();
+            rawConditions.add("(created >= :rf%1$d AND created < :rt%1$d)".formatted(i));
+            params.addValue("rf" + i, Timestamp.valueOf(segment.getFrom()))
+                    .addValue("rt" + i, Timestamp.valueOf(segment.getTo()));
+        }
+        if (!rawConditions.isEmpty()) {
+            parts.add("""
+                    SELECT a.name AS app, u.uri AS uri, r.hits AS hits
+                    FROM (SELECT app_id, uri_id, COUNT(*) AS hits FROM endpoint_hits
+                          WHERE (%s)%s
+                          GROUP BY app_id, uri_id) r
+                    JOIN app_dictionary a ON a.id = r.app_id
+                    JOIN uri_dictionary u ON u.id = r.uri_id
+                    """.formatted(String.join(" OR ", rawConditions), uriIdCondition(uris)));
+        }
+
+        if (parts.isEmpty()) {
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("""
+                SELECT app, uri, SUM(hits) FROM (%s) t
+                GROUP BY app, uri
+                """.formatted(String.join(" UNION ALL ", parts)));
+
+        ViewStatsDto after = page.getAfter();
+        if (after != null) {
+            sql.append("""
+                    HAVING SUM(hits) < :afterHits
+                        OR (SUM(hits) = :afterHits
+                            AND (app%1$s > :afterApp OR (app = :afterApp AND uri%1$s > :afterUri)))
+                    """.formatted(collate));
+            params.addValue("afterHits", after.getHits())
+                    .addValue("afterApp", after.getApp())
+                    .addValue("afterUri", after.getUri());
+        }
+        sql.append("ORDER BY SUM(hits) DESC, app%1$s, uri%1$s\n".formatted(collate));
+        if (page.getLimit() != null) {
+            sql.append("LIMIT :limit\n");
+            params.addValue("limit", page.getLimit());
+        }
+
+        query(sql.toString(), params, consumer);
+    }
+
+    /**
+     * Distinct IPs per app and uri with timestamps in [start, end], counted over the raw hits.
+     * Rows come sorted by count desc, then app and uri.
+     *
+     * @param uris uris to include, or null for all
+     */
+    public void streamUniqueHits(LocalDateTime start,
+                                 LocalDateTime end,
+                                 List<String> uris,
+                                 Consumer<ViewStatsDto> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        if (uris != null) {
+            params.addValue("uris", uris);
+        }
+
+        String sql = """
+                SELECT a.name, u.uri, r.hits
+                FROM (SELECT app_id, uri_id, COUNT(DISTINCT ip_id) AS hits FROM endpoint_hits
+                      WHERE created >= :start AND created <= :end%1$s
+                      GROUP BY app_id, uri_id) r
+                JOIN app_dictionary a ON a.id = r.app_id
+                JOIN uri_dictionary u ON u.id = r.uri_id
+                ORDER BY r.hits DESC, a.name%2$s, u.uri%2$s
+                """.formatted(uriIdCondition(uris), collate);
+
+        query(sql, params, consumer);
+    }
+
+    /**
+     * Raw hits created at or after from, with app, uri and their dictionary ids.
+     * On PostgreSQL the cursor only streams inside a transaction.
+     */
+    public void forEachHitSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        String sql = """
+                SELECT h.id, h.app_id, a.name, h.uri_id, u.uri, h.ip_id, h.created
+                FROM endpoint_hits h
+                JOIN app_dictionary a ON a.id = h.app_id
+                JOIN uri_dictionary u ON u.id = h.uri_id
+                WHERE h.created >= :from
+                """;
+        namedJdbcTemplate.query(sql, new MapSqlParameterSource("from", Timestamp.valueOf(from)),
+                (RowCallbackHandler) rs -> consumer.accept(EndpointHit.builder()
+                        .id(rs.getLong(1))
+                        .appId(rs.getInt(2))
+                        .app(rs.getString(3))
+                        .uriId(rs.getInt(4))
+                        .uri(rs.getString(5))
+                        .ipId(rs.getInt(6))
+                        .timestamp(rs.getTimestamp(7).toLocalDateTime())
+                        .build()));
+    }
+
+    private String uriIdCondition(List<String> uris) {
+        return uris != null ? " AND uri_id IN (SELECT id FROM uri_dictionary WHERE uri IN (:uris))" : "";
+    }
+
+    private void query(String sql, MapSqlParameterSource params, Consumer<ViewStatsDto> consumer) {
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                consumer.accept(new ViewStatsDto(rs.getString(1), rs.getString(2), rs.getLong(3))));
+    }
+}
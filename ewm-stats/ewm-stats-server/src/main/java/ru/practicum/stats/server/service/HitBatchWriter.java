@@ -0,0 +1,367 @@
+package ru.practicum.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.server.mapper.IpAddressMapper;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.model.HitRollupId;
+import ru.practicum.stats.server.model.NameDictionary;
+import ru.practicum.stats.server.model.RollupGranularity;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+import ru.practicum.stats.server.sketch.HyperLogLog;
+import ru.practicum.stats.server.sketch.IpBitmaps;
+import ru.practicum.stats.server.storage.HitStore;
+import ru.practicum.stats.server.storage.HotHitWindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Group-commit writer for hits.
+ * Callers enqueue their hits and wait for the returned future; a single thread
+ * takes everything queued so far (up to maxBatch hits), drops those whose hit id is
+ * already stored (HitDeduplicator) and stores the rest in one
+ * transaction through the HitStore, after mapping app, uri and ip to
+ * their dictionary ids. Requests arriving while a commit is
+ * in progress are written together in the next one.
+ * The minute/hour/day rollups, the IP sketches of hour/day rollups and the
+ * IP bitmaps of day rollups are updated in the same transaction. Being the only
+ * writer, it keeps recently used sketches and bitmaps in memory instead of
+ * reading them back for every batch. Committed hits are added to the
+ * in-memory all-time counters (HitTotals), top uri summaries (TopHits), recent hit
+ * columns (HotHitWindow) and uri trie (UriTrie).
+ * If a batch of several requests fails, each request is committed in its own transaction,
+ * so only the requests that cannot be stored fail.
+ */
+@Slf4j
+@Component
+public class HitBatchWriter {
+
+    private static final int SKETCH_CACHE_SIZE = 1000;
+    private static final int BITMAP_CACHE_SIZE = 200;
+    private static final String HIT_ID_INDEX_SUFFIX = "hit_id_created_idx";
+
+    private final HitStore hitStore;
+    private final HitRollupJdbcRepository rollupRepository;
+    private final IpDictionary ipDictionary;
+    private final NameDictionaries nameDictionaries;
+    private final HitTotals hitTotals;
+    private final TopHits topHits;
+    private final UriTrie uriTrie;
+    private final HotHitWindow hotWindow;
+    private final HitDeduplicator deduplicator;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatch;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    /**
+     * Recently updated sketches, least recently used evicted first. Writer thread only.
+     */
+    private final Map<HitRollupId, HyperLogLog> sketchCache =
+            new LinkedHashMap<>(SKETCH_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<HitRollupId, HyperLogLog> eldest) {
+                    return size() > SKETCH_CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Recently updated day bitmaps, least recently used evicted first. Writer thread only.
+     */
+    private final Map<HitRollupId, RoaringBitmap> bitmapCache =
+            new LinkedHashMap<>(BITMAP_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<HitRollupId, RoaringBitmap> eldest) {
+                    return size() > BITMAP_CACHE_SIZE;
+                }
+            };
+
+    public HitBatchWriter(HitStore hitStore,
+                          HitRollupJdbcRepository rollupRepository,
+                          IpDictionary ipDictionary,
+                          NameDictionaries nameDictionaries,
+                          HitTotals hitTotals,
+                          TopHits topHits,
+                          UriTrie uriTrie,
+                          HotHitWindow hotWindow,
+                          HitDeduplicator deduplicator,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${stats.writer.queue-capacity:10000}") int queueCapacity,
+                          @Value("${stats.writer.max-batch:1000}") int maxBatch) {
+        this.hitStore = hitStore;
+        this.rollupRepository = rollupRepository;
+        this.ipDictionary = ipDictionary;
+        this.nameDictionaries = nameDictionaries;
+        this.hitTotals = hitTotals;
+        this.topHits = topHits;
+        this.uriTrie = uriTrie;
+        this.hotWindow = hotWindow;
+        this.deduplicator = deduplicator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::run, "hit-batch-writer");
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Queues hits for the next commit. Blocks while the queue is full.
+     * The future completes when the hits are committed.
+     */
+    public CompletableFuture<Void> write(List<EndpointHit> hits) {
+        PendingWrite pending = new PendingWrite(hits, new CompletableFuture<>());
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.getDone().completeExceptionally(e);
+        }
+        return pending.getDone();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            PendingWrite first;
+            try {
+                first = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                continue;
+            }
+
+            List<PendingWrite> group = new ArrayList<>();
+            List<EndpointHit> hits = new ArrayList<>(first.getHits());
+            group.add(first);
+
+            PendingWrite next;
+            while (hits.size() < maxBatch && (next = queue.poll()) != null) {
+                group.add(next);
+                hits.addAll(next.getHits());
+            }
+
+            commit(group, hits);
+        }
+    }
+
+    private void commit(List<PendingWrite> group, List<EndpointHit> received) {
+        List<EndpointHit> hits;
+        try {
+            hits = persist(received);
+        } catch (RuntimeException e) {
+            invalidateCaches();
+            if (group.size() == 1) {
+                log.error("Failed to commit {} hits", received.size(), e);
+                group.get(0).getDone().completeExceptionally(e);
+                return;
+            }
+            // only the request that broke the batch should fail: commit the requests one by one
+            log.warn("Failed to commit {} hits from {} requests, committing each request separately: {}",
+                    received.size(), group.size(), e.toString());
+            for (PendingWrite pending : group) {
+                pending.getHits().forEach(hit -> hit.setId(null));
+                commit(List.of(pending), pending.getHits());
+            }
+            return;
+        }
+
+        try {
+            deduplicator.remember(hits);
+            hitTotals.record(hits);
+            topHits.record(hits);
+            hotWindow.record(hits);
+            uriTrie.addAll(hits.stream().map(EndpointHit::getUri).collect(Collectors.toSet()));
+            group.forEach(pending -> pending.getDone().complete(null));
+            log.debug("Committed {} hits from {} requests", hits.size(), group.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to record {} committed hits", hits.size(), e);
+            group.forEach(pending -> pending.getDone().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Stores the hits not stored yet and returns them.
+     */
+    private List<EndpointHit> persist(List<EndpointHit> received) {
+        List<EndpointHit> hits = deduplicator.filter(received, false);
+        try {
+            store(hits);
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesHitIdIndex(e)) {
+                throw e;
+            }
+            // a stored hit id the filters did not know about; check every id and try once more
+            log.warn("Hit id conflict in a batch of {} hits, retrying with exact dedup", received.size());
+            invalidateCaches();
+            received.forEach(hit -> hit.setId(null));
+            hits = deduplicator.filter(received, true);
+            store(hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Whether the violated constraint is the unique (hit_id, created) index. PostgreSQL reports the
+     * index of the partition, named after it with the same suffix, so the suffix is matched.
+     */
+    private static boolean violatesHitIdIndex(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && message.toLowerCase(Locale.ROOT).contains(HIT_ID_INDEX_SUFFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void store(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<HitRollupId, Long> rollups = countByBucket(hits);
+        Map<HitRollupId, HyperLogLog> batchSketches = sketchByBucket(hits);
+        transactionTemplate.executeWithoutResult(status -> {
+            assignDictionaryIds(hits);
+            hitStore.append(hits);
+            rollupRepository.addHits(rollups);
+            rollupRepository.updateSketches(mergeSketches(batchSketches));
+            rollupRepository.updateBitmaps(mergeBitmaps(hits));
+        });
+    }
+
+    /**
+     * Cached sketches, bitmaps and dictionary ids may contain values of a rolled back batch.
+     */
+    private void invalidateCaches() {
+        sketchCache.clear();
+        bitmapCache.clear();
+        ipDictionary.invalidate();
+        nameDictionaries.invalidate();
+    }
+
+    private Map<HitRollupId, Long> countByBucket(List<EndpointHit> hits) {
+        Map<HitRollupId, Long> counts = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                HitRollupId key = new HitRollupId(
+                        granularity, hit.getApp(), hit.getUri(), granularity.floor(hit.getTimestamp()));
+                counts.merge(key, 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private Map<HitRollupId, HyperLogLog> sketchByBucket(List<EndpointHit> hits) {
+        Map<HitRollupId, HyperLogLog> sketches = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                if (granularity.isSketched()) {
+                    HitRollupId key = new HitRollupId(
+                            granularity, hit.getApp(), hit.getUri(), granularity.floor(hit.getTimestamp()));
+                    sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(IpAddressMapper.canonical(hit.getIp()));
+                }
+            }
+        }
+        return sketches;
+    }
+
+    /**
+     * Merges the batch sketches into the stored ones and returns the results to write.
+     */
+    private Map<HitRollupId, byte[]> mergeSketches(Map<HitRollupId, HyperLogLog> batchSketches) {
+        Map<HitRollupId, byte[]> merged = new HashMap<>();
+        batchSketches.forEach((key, batchSketch) -> {
+            HyperLogLog sketch = sketchCache.get(key);
+            if (sketch == null) {
+                sketch = HyperLogLog.fromBytes(rollupRepository.findSketch(key));
+                sketchCache.put(key, sketch);
+            }
+            sketch.merge(batchSketch);
+            merged.put(key, sketch.toBytes());
+        });
+        return merged;
+    }
+
+    /**
+     * Sets the app, uri and ip dictionary ids of the hits, adding new values to the dictionaries.
+     */
+    private void assignDictionaryIds(List<EndpointHit> hits) {
+        Map<String, Integer> appIds = nameDictionaries.resolve(NameDictionary.APP,
+                hits.stream().map(EndpointHit::getApp).toList());
+        Map<String, Integer> uriIds = nameDictionaries.resolve(NameDictionary.URI,
+                hits.stream().map(EndpointHit::getUri).toList());
+        Map<String, Integer> ipIds = ipDictionary.resolve(hits.stream().map(EndpointHit::getIp).toList());
+
+        for (EndpointHit hit : hits) {
+            hit.setAppId(appIds.get(hit.getApp()));
+            hit.setUriId(uriIds.get(hit.getUri()));
+            hit.setIpId(ipIds.get(hit.getIp()));
+        }
+    }
+
+    /**
+     * Adds the IP ids of the batch to the day bitmaps and returns the results to write.
+     */
+    private Map<HitRollupId, byte[]> mergeBitmaps(List<EndpointHit> hits) {
+        Map<HitRollupId, RoaringBitmap> touched = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            HitRollupId key = new HitRollupId(RollupGranularity.DAY, hit.getApp(), hit.getUri(),
+                    RollupGranularity.DAY.floor(hit.getTimestamp()));
+            RoaringBitmap bitmap = touched.computeIfAbsent(key, this::cachedBitmap);
+            bitmap.add(hit.getIpId());
+        }
+
+        Map<HitRollupId, byte[]> merged = new HashMap<>();
+        touched.forEach((key, bitmap) -> merged.put(key, IpBitmaps.toBytes(bitmap)));
+        return merged;
+    }
+
+    private RoaringBitmap cachedBitmap(HitRollupId key) {
+        RoaringBitmap bitmap = bitmapCache.get(key);
+        if (bitmap == null) {
+            bitmap = IpBitmaps.fromBytes(rollupRepository.findBitmap(key));
+            bitmapCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class PendingWrite {
+        private final List<EndpointHit> hits;
+        private final CompletableFuture<Void> done;
+    }
+}
@@ -0,0 +1,170 @@
+package ru.practicum.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.sketch.BloomFilter;
+import ru.practicum.stats.server.storage.HitStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Drops hits whose client hit id was already stored, so retried and replayed hits are counted once.
+ * <p>
+ * Ids stored during the last stats.dedup.window are kept in rotating Bloom filters, one per
+ * window / generations of arrival time, so the filters forget ids as they age out. A hit with a
+ * recent version 7 id (the id carries its creation time) that no filter contains is new, which
+ * is the common case and needs no lookup. Ids some filter may contain, ids older than the window
+ * and ids of other versions are looked up in the HitStore, so a filter match alone never drops
+ * a hit. The filters are refilled from the stored hits of the window at startup.
+ * The unique (hit_id, created) index of endpoint_hits catches anything missed (see HitBatchWriter).
+ * <p>
+ * A new id matches one of the generations + 1 filters with probability of about
+ * (generations + 1) * false-positive-rate while each filter holds at most its expected share of
+ * ids: 5e-6 with the defaults, so about one batch of 1000 hits in 200 needs a lookup. Each filter
+ * takes about 29 bits per expected id at that rate, 9 MB per generation for 10 million hits a day.
+ * Used by the writer thread only.
+ */
+@Slf4j
+@Component
+@DependsOn("statsSchemaInitializer")
+public class HitDeduplicator {
+
+    private final HitStore hitStore;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration window;
+    private final int generations;
+    private final long expectedHits;
+    private final double falsePositiveRate;
+    private final long sliceMillis;
+
+    /**
+     * Newest first; the newest one receives the ids stored now.
+     */
+    private final Deque<BloomFilter> filters = new ArrayDeque<>();
+    private long sliceStart;
+
+    public HitDeduplicator(HitStore hitStore,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${stats.dedup.window:PT24H}") Duration window,
+                           @Value("${stats.dedup.generations:4}") int generations,
+                           @Value("${stats.dedup.expected-hits:10000000}") long expectedHits,
+                           @Value("${stats.dedup.false-positive-rate:0.000001}") double falsePositiveRate) {
+        this.hitStore = hitStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.window = window;
+        this.generations = generations;
+        this.expectedHits = expectedHits;
+        this.falsePositiveRate = falsePositiveRate;
+        this.sliceMillis = Math.max(1, window.toMillis() / generations);
+    }
+
+    /**
+     * Puts the ids of the hits created during the window into one filter sized for a whole window.
+     */
+    @PostConstruct
+    public void load() {
+        BloomFilter loaded = new BloomFilter(expectedHits, falsePositiveRate);
+        transactionTemplate.executeWithoutResult(status ->
+                hitStore.forEachHitIdSince(LocalDateTime.now().minus(window), loaded::add));
+        filters.addFirst(loaded);
+        sliceStart = System.currentTimeMillis();
+        log.info("Hit dedup filters loaded with {} hit ids", loaded.size());
+    }
+
+    /**
+     * The hits to store: hits without a hit id, and the first hit of each id not stored yet.
+     *
+     * @param exact whether to look every hit id up in the HitStore instead of trusting the filters
+     */
+    public List<EndpointHit> filter(List<EndpointHit> hits, boolean exact) {
+        long now = System.currentTimeMillis();
+        rotate(now);
+        long windowStart = now - window.toMillis();
+
+        Set<UUID> seen = new HashSet<>();
+        List<EndpointHit> suspects = new ArrayList<>();
+        for (EndpointHit hit : hits) {
+            UUID id = hit.getHitId();
+            if (id == null || !seen.add(id)) {
+                continue;
+            }
+            if (exact || createdMillis(id) < windowStart || mightContain(id)) {
+                suspects.add(hit);
+            }
+        }
+        Set<UUID> duplicates = suspects.isEmpty() ? Set.of() : hitStore.findStoredHitIds(suspects);
+
+        List<EndpointHit> fresh = new ArrayList<>(hits.size());
+        Set<UUID> kept = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            UUID id = hit.getHitId();
+            if (id == null || (!duplicates.contains(id) && kept.add(id))) {
+                fresh.add(hit);
+            }
+        }
+        if (fresh.size() < hits.size()) {
+            log.debug("Skipped {} duplicate hits, {} looked up", hits.size() - fresh.size(), suspects.size());
+        }
+        return fresh;
+    }
+
+    /**
+     * Adds the ids of committed hits to the filters.
+     */
+    public void remember(List<EndpointHit> hits) {
+        BloomFilter newest = filters.getFirst();
+        for (EndpointHit hit : hits) {
+            if (hit.getHitId() != null) {
+                newest.add(hit.getHitId());
+            }
+        }
+    }
+
+    private boolean mightContain(UUID id) {
+        for (BloomFilter filter : filters) {
+            if (filter.mightContain(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts a new filter every slice and keeps enough of them to cover the whole window.
+     */
+    private void rotate(long now) {
+        if (now - sliceStart < sliceMillis) {
+            return;
+        }
+        if (now - sliceStart >= window.toMillis() + sliceMillis) {
+            filters.clear();
+        }
+        filters.addFirst(new BloomFilter(Math.max(1, expectedHits / generations), falsePositiveRate));
+        while (filters.size() > generations + 1) {
+            filters.removeLast();
+        }
+        sliceStart = now;
+    }
+
+    /**
+     * Creation time of a version 7 UUID in epoch millis, or Long.MIN_VALUE for other versions.
+     */
+    private static long createdMillis(UUID id) {
+        return id.version() == 7 ? id.getMostSignificantBits() >>> 16 : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,250 @@
+package ru.practicum.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.model.HitTotal;
+import ru.practicum.stats.server.model.HitTotalsState;
+import ru.practicum.stats.server.repository.HitTotalsJdbcRepository;
+import ru.practicum.stats.server.sketch.IpBitmaps;
+import ru.practicum.stats.server.storage.HitStore;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * All-time hit and unique visitor counters per app and uri, kept in memory.
+ * HitBatchWriter records every committed batch, so a stats request covering
+ * the whole history is answered without touching the database.
+ * Changed counters are snapshotted to hit_totals periodically; at startup the
+ * snapshot is loaded and only the hits written after it are replayed.
+ */
+@Slf4j
+@Component
+@DependsOn("statsSchemaInitializer")
+@RequiredArgsConstructor
+public class HitTotals {
+
+    private static final int REPLAY_CHUNK = 1000;
+
+    private final HitTotalsJdbcRepository repository;
+    private final HitStore hitStore;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Counters by uri, then by app: the usual request asks for a few uris.
+     */
+    private final Map<String, Map<String, Counter>> counters = new ConcurrentHashMap<>();
+
+    private final Set<Counter> changed = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong lastHitId = new AtomicLong();
+    private final AtomicReference<LocalDateTime> minCreated = new AtomicReference<>();
+    private final AtomicReference<LocalDateTime> maxCreated = new AtomicReference<>();
+
+    /**
+     * Recording takes the read lock, a snapshot takes the write lock to copy a consistent state.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void load() {
+        HitTotalsState state = repository.findState();
+        if (state != null) {
+            repository.forEachTotal(total -> counter(total.getApp(), total.getUri()).restore(total));
+            lastHitId.set(state.getLastHitId());
+            minCreated.set(state.getMinCreated());
+            maxCreated.set(state.getMaxCreated());
+        }
+
+        long[] replayed = new long[1];
+        List<EndpointHit> chunk = new ArrayList<>(REPLAY_CHUNK);
+        transactionTemplate.executeWithoutResult(status -> hitStore.forEachHitAfter(lastHitId.get(), hit -> {
+            chunk.add(hit);
+            if (chunk.size() == REPLAY_CHUNK) {
+                replayed[0] += replay(chunk);
+            }
+        }));
+        replayed[0] += replay(chunk);
+
+        log.info("Hit totals loaded: {} uris, {} hits replayed after the snapshot", counters.size(), replayed[0]);
+    }
+
+    private int replay(List<EndpointHit> hits) {
+        int size = hits.size();
+        record(hits);
+        hits.clear();
+        return size;
+    }
+
+    /**
+     * Adds committed hits to the counters.
+     */
+    public void record(List<EndpointHit> hits) {
+        snapshotLock.readLock().lock();
+        try {
+            for (EndpointHit hit : hits) {
+                Counter counter = counter(hit.getApp(), hit.getUri());
+                counter.add(hit.getIpId());
+                changed.add(counter);
+
+                lastHitId.accumulateAndGet(hit.getId(), Math::max);
+                minCreated.accumulateAndGet(hit.getTimestamp(),
+                        (current, created) -> current == null || created.isBefore(current) ? created : current);
+                maxCreated.accumulateAndGet(hit.getTimestamp(),
+                        (current, created) -> current == null || created.isAfter(current) ? created : current);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether [start, end] includes every recorded hit, so the counters give
+     * the same answer as the database.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime min = minCreated.get();
+        LocalDateTime max = maxCreated.get();
+        return min == null || (!start.isAfter(min) && !end.isBefore(max));
+    }
+
+    /**
+     * All-time hits (or unique visitors) by app and uri.
+     *
+     * @param uris uris to include, or null for all
+     */
+    public Map<String, Map<String, Long>> count(Collection<String> uris, boolean unique) {
+        Map<String, Map<String, Long>> result = new HashMap<>();
+        if (uris == null) {
+            counters.forEach((uri, byApp) -> addCounts(result, uri, byApp, unique));
+        } else {
+            for (String uri : uris) {
+                Map<String, Counter> byApp = counters.get(uri);
+                if (byApp != null) {
+                    addCounts(result, uri, byApp, unique);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addCounts(Map<String, Map<String, Long>> result,
+                           String uri,
+                           Map<String, Counter> byApp,
+                           boolean unique) {
+        byApp.forEach((app, counter) -> result.computeIfAbsent(app, a -> new HashMap<>())
+                .put(uri, unique ? counter.uniqueHits.sum() : counter.hits.sum()));
+    }
+
+    private Counter counter(String app, String uri) {
+        return counters.computeIfAbsent(uri, u -> new ConcurrentHashMap<>())
+                .computeIfAbsent(app, a -> new Counter(a, uri));
+    }
+
+    /**
+     * Writes the counters changed since the previous snapshot.
+     */
+    @Scheduled(fixedDelayString = "${stats.totals.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        List<Counter> snapshotted;
+        List<HitTotal> totals = new ArrayList<>();
+        HitTotalsState state;
+
+        snapshotLock.writeLock().lock();
+        try {
+            snapshotted = new ArrayList<>(changed);
+            changed.clear();
+            snapshotted.forEach(counter -> totals.add(counter.toTotal()));
+            state = HitTotalsState.builder()
+                    .id(HitTotalsState.ID)
+                    .lastHitId(lastHitId.get())
+                    .minCreated(minCreated.get())
+                    .maxCreated(maxCreated.get())
+                    .build();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.saveSnapshot(totals, state));
+            log.debug("Hit totals snapshot: {} counters up to hit {}", totals.size(), state.getLastHitId());
+        } catch (RuntimeException e) {
+            changed.addAll(snapshotted);
+            log.error("Failed to snapshot hit totals", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+    }
+
+    private static class Counter {
+        private final String app;
+        private final String uri;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder uniqueHits = new LongAdder();
+        private final RoaringBitmap visitors = new RoaringBitmap();
+
+        Counter(String app, String uri) {
+            this.app = app;
+            this.uri = uri;
+        }
+
+        void add(int ipId) {
+            hits.increment();
+            boolean added;
+            synchronized (visitors) {
+                added = visitors.checkedAdd(ipId);
+            }
+            if (added) {
+                uniqueHits.increment();
+            }
+        }
+
+        void restore(HitTotal total) {
+            hits.add(total.getHits());
+            uniqueHits.add(total.getUniqueHits());
+            synchronized (visitors) {
+                visitors.or(IpBitmaps.fromBytes(total.getVisitors()));
+            }
+        }
+
+        HitTotal toTotal() {
+            byte[] bitmap;
+            synchronized (visitors) {
+                bitmap = IpBitmaps.toBytes(visitors);
+            }
+            return HitTotal.builder()
+                    .app(app)
+                    .uri(uri)
+                    .hits(hits.sum())
+                    .uniqueHits(uniqueHits.sum())
+                    .visitors(bitmap)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.practicum.stats.server.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.server.mapper.IpAddressMapper;
+import ru.practicum.stats.server.model.IpDictionaryEntry;
+import ru.practicum.stats.server.repository.IpDictionaryRepository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps visitor IPs to dense int ids (1, 2, 3, ...) stored in ip_dictionary.
+ * New ids are handed out only by the hit writer thread and the startup backfill,
+ * so the next id is tracked in memory. Resolved ids are kept in an LRU cache.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IpDictionary {
+
+    private static final int CACHE_SIZE = 100_000;
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final IpDictionaryRepository repository;
+
+    private final Map<String, Integer> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private Integer nextId;
+
+    /**
+     * Returns ids of the given IPs, adding the unknown ones to the dictionary.
+     * Must run inside the transaction that uses the ids.
+     */
+    public synchronized Map<String, Integer> resolve(Collection<String> ips) {
+        Map<String, Integer> ids = lookup(ips);
+
+        List<IpDictionaryEntry> created = new ArrayList<>();
+        for (String ip : new LinkedHashSet<>(ips)) {
+            if (!ids.containsKey(ip)) {
+                if (nextId == null) {
+                    nextId = repository.findMaxId() + 1;
+                }
+                IpDictionaryEntry entry = IpDictionaryEntry.builder()
+                        .id(nextId++)
+                        .address(IpAddressMapper.encode(ip))
+                        .build();
+                created.add(entry);
+                ids.put(ip, entry.getId());
+            }
+        }
+
+        if (!created.isEmpty()) {
+            repository.saveAll(created);
+            log.debug("Added {} IPs to the dictionary", created.size());
+        }
+
+        cache.putAll(ids);
+        return ids;
+    }
+
+    /**
+     * Returns ids of the given IPs that are already in the dictionary.
+     */
+    public Map<String, Integer> lookup(Collection<String> ips) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String ip : new LinkedHashSet<>(ips)) {
+            Integer id = cache.get(ip);
+            if (id != null) {
+                ids.put(ip, id);
+            } else {
+                missing.add(ip);
+            }
+        }
+
+        for (int i = 0; i < missing.size(); i += LOOKUP_CHUNK) {
+            List<String> chunk = missing.subList(i, Math.min(i + LOOKUP_CHUNK, missing.size()));
+
+            Map<ByteBuffer, String> byAddress = new HashMap<>();
+            chunk.forEach(ip -> byAddress.put(ByteBuffer.wrap(IpAddressMapper.encode(ip)), ip));
+
+            List<byte[]> addresses = byAddress.keySet().stream().map(ByteBuffer::array).toList();
+            for (IpDictionaryEntry entry : repository.findAllByAddressIn(addresses)) {
+                String ip = byAddress.get(ByteBuffer.wrap(entry.getAddress()));
+                ids.put(ip, entry.getId());
+                cache.put(ip, entry.getId());
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Forgets cached ids, e.g. after a rolled back transaction that created some of them.
+     */
+    public synchronized void invalidate() {
+        cache.clear();
+        nextId = null;
+    }
+}
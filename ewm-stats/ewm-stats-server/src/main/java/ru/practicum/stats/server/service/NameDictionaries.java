@@ -0,0 +1,95 @@
+package ru.practicum.stats.server.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.server.model.NameDictionary;
+import ru.practicum.stats.server.repository.NameDictionaryJdbcRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps app names and uris to the integer ids stored in endpoint_hits.
+ * Like IpDictionary, new ids are handed out only by the hit writer thread and
+ * the startup migration, so the next id is tracked in memory.
+ * Resolved ids are kept in an LRU cache per dictionary.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NameDictionaries {
+
+    private static final int CACHE_SIZE = 100_000;
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final NameDictionaryJdbcRepository repository;
+
+    private final Map<NameDictionary, Map<String, Integer>> caches = new EnumMap<>(NameDictionary.class);
+    private final Map<NameDictionary, Integer> nextIds = new EnumMap<>(NameDictionary.class);
+
+    /**
+     * Returns ids of the given names, adding the unknown ones to the dictionary.
+     * Must run inside the transaction that uses the ids.
+     */
+    public synchronized Map<String, Integer> resolve(NameDictionary dictionary, Collection<String> names) {
+        Map<String, Integer> cache = cache(dictionary);
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String name : new LinkedHashSet<>(names)) {
+            Integer id = cache.get(name);
+            if (id != null) {
+                ids.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+
+        for (int i = 0; i < missing.size(); i += LOOKUP_CHUNK) {
+            ids.putAll(repository.findIds(dictionary,
+                    missing.subList(i, Math.min(i + LOOKUP_CHUNK, missing.size()))));
+        }
+
+        Map<String, Integer> created = new HashMap<>();
+        for (String name : missing) {
+            if (!ids.containsKey(name)) {
+                int id = nextIds.computeIfAbsent(dictionary, d -> repository.findMaxId(d) + 1);
+                nextIds.put(dictionary, id + 1);
+                created.put(name, id);
+                ids.put(name, id);
+            }
+        }
+
+        if (!created.isEmpty()) {
+            repository.insert(dictionary, created);
+            log.debug("Added {} entries to {}", created.size(), dictionary.getTable());
+        }
+
+        cache.putAll(ids);
+        return ids;
+    }
+
+    /**
+     * Forgets cached ids, e.g. after a rolled back transaction that created some of them.
+     */
+    public synchronized void invalidate() {
+        caches.clear();
+        nextIds.clear();
+    }
+
+    private Map<String, Integer> cache(NameDictionary dictionary) {
+        return caches.computeIfAbsent(dictionary, d -> new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+    }
+}
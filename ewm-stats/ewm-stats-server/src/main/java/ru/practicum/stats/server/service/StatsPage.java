@@ -0,0 +1,136 @@
+package ru.practicum.stats.server.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.exceptions.ValidationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keyset page of stats rows in their usual order: hits desc, then app and uri.
+ * The cursor is the last row of the previous page, encoded as an opaque string;
+ * a page holds the rows after it, at most limit of them.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class StatsPage {
+
+    public static final Comparator<ViewStatsDto> ORDER = Comparator.comparing(ViewStatsDto::getHits).reversed()
+            .thenComparing(ViewStatsDto::getApp)
+            .thenComparing(ViewStatsDto::getUri);
+
+    private static final StatsPage UNPAGED = new StatsPage(null, null);
+
+    /**
+     * Maximum number of rows, or null for all.
+     */
+    private final Integer limit;
+
+    /**
+     * Last row of the previous page, or null for the first page.
+     */
+    private final ViewStatsDto after;
+
+    public static StatsPage unpaged() {
+        return UNPAGED;
+    }
+
+    /**
+     * @param limit  maximum number of rows, or null for all
+     * @param cursor cursor returned with the previous page, or null for the first page
+     */
+    public static StatsPage of(Integer limit, String cursor) {
+        if (limit != null && limit < 1) {
+            throw new ValidationException("limit must be positive");
+        }
+        if (limit == null && cursor == null) {
+            return UNPAGED;
+        }
+        return new StatsPage(limit, cursor == null ? null : decode(cursor));
+    }
+
+    public boolean isUnpaged() {
+        return limit == null && after == null;
+    }
+
+    /**
+     * The rows of this page out of an unsorted collection. With a limit only the
+     * first limit rows are kept while selecting, so the collection is not sorted as a whole.
+     */
+    public List<ViewStatsDto> select(Collection<ViewStatsDto> rows) {
+        if (limit == null) {
+            List<ViewStatsDto> result = new ArrayList<>(rows.size());
+            for (ViewStatsDto row : rows) {
+                if (isAfterCursor(row)) {
+                    result.add(row);
+                }
+            }
+            result.sort(ORDER);
+            return result;
+        }
+
+        PriorityQueue<ViewStatsDto> best = new PriorityQueue<>(limit + 1, ORDER.reversed());
+        for (ViewStatsDto row : rows) {
+            if (isAfterCursor(row)) {
+                best.add(row);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        List<ViewStatsDto> result = new ArrayList<>(best);
+        result.sort(ORDER);
+        return result;
+    }
+
+    private boolean isAfterCursor(ViewStatsDto row) {
+        return after == null || ORDER.compare(row, after) > 0;
+    }
+
+    /**
+     * Cursor of the page following the given rows of this page, or null when there is none.
+     */
+    public String nextCursor(List<ViewStatsDto> rows) {
+        if (limit == null || rows.size() < limit) {
+            return null;
+        }
+        return encode(rows.get(rows.size() - 1));
+    }
+
+    private static String encode(ViewStatsDto row) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(row.getHits());
+            out.writeUTF(row.getApp());
+            out.writeUTF(row.getUri());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static ViewStatsDto decode(String cursor) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            long hits = in.readLong();
+            String app = in.readUTF();
+            String uri = in.readUTF();
+            return new ViewStatsDto(app, uri, hits);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new ValidationException("Malformed cursor: " + cursor);
+        }
+    }
+}
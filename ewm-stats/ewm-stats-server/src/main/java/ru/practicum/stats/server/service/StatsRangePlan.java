@@ -0,0 +1,95 @@
+package ru.practicum.stats.server.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.stats.server.model.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split of a closed stats range [start, end] into parts answered by rollups and by raw hits.
+ * The middle of the range is covered by the coarsest whole buckets that fit
+ * (days, then hours, then minutes towards the edges); only the ragged parts
+ * before the first and after the last whole bucket of the finest granularity
+ * are read from endpoint_hits.
+ * All parts are half-open [from, to) and together cover the range exactly once.
+ */
+@Getter
+public class StatsRangePlan {
+
+    private final List<Segment> rollupSegments = new ArrayList<>();
+    private final List<Segment> rawSegments = new ArrayList<>();
+
+    static StatsRangePlan of(LocalDateTime start, LocalDateTime end) {
+        return of(start, end, RollupGranularity.MINUTE);
+    }
+
+    /**
+     * Plan that uses rollups no finer than the given granularity.
+     */
+    static StatsRangePlan of(LocalDateTime start, LocalDateTime end, RollupGranularity finest) {
+        StatsRangePlan plan = new StatsRangePlan();
+
+        // timestamps are stored with microsecond precision, so this includes end itself
+        LocalDateTime endExclusive = end.plus(1, ChronoUnit.MICROS);
+
+        LocalDateTime from = finest.ceil(start);
+        LocalDateTime to = finest.floor(endExclusive);
+
+        if (!from.isBefore(to)) {
+            plan.rawSegments.add(new Segment(null, start, endExclusive));
+            return plan;
+        }
+
+        if (start.isBefore(from)) {
+            plan.rawSegments.add(new Segment(null, start, from));
+        }
+        if (to.isBefore(endExclusive)) {
+            plan.rawSegments.add(new Segment(null, to, endExclusive));
+        }
+
+        plan.cover(from, to, finest.ordinal());
+        return plan;
+    }
+
+    /**
+     * Covers [from, to), aligned to the given granularity, with the coarsest buckets possible.
+     */
+    private void cover(LocalDateTime from, LocalDateTime to, int level) {
+        RollupGranularity[] levels = RollupGranularity.values();
+        RollupGranularity granularity = levels[level];
+
+        if (level == levels.length - 1) {
+            rollupSegments.add(new Segment(granularity, from, to));
+            return;
+        }
+
+        RollupGranularity coarser = levels[level + 1];
+        LocalDateTime innerFrom = coarser.ceil(from);
+        LocalDateTime innerTo = coarser.floor(to);
+
+        if (!innerFrom.isBefore(innerTo)) {
+            rollupSegments.add(new Segment(granularity, from, to));
+            return;
+        }
+
+        if (from.isBefore(innerFrom)) {
+            rollupSegments.add(new Segment(granularity, from, innerFrom));
+        }
+        if (innerTo.isBefore(to)) {
+            rollupSegments.add(new Segment(granularity, innerTo, to));
+        }
+        cover(innerFrom, innerTo, level + 1);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Segment {
+        private final RollupGranularity granularity;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+    }
+}
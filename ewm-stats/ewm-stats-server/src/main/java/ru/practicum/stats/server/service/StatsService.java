@@ -1,16 +1,37 @@
 package ru.practicum.stats.server.service;
 
 import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.TopViewStatsDto;
 import ru.practicum.stats.dto.ViewStatsDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveHit(EndpointHitDto dto);
 
+    void saveHits(List<EndpointHitDto> dtos);
+
     List<ViewStatsDto> getStats(LocalDateTime start,
                                 LocalDateTime end,
                                 List<String> uris,
-                                boolean unique);
+                                boolean unique,
+                                boolean approximate,
+                                StatsPage page);
+
+    /**
+     * Approximate most visited uris of a recent window ("5m", "1h" or "24h"), without database access.
+     */
+    List<TopViewStatsDto> getTop(int k, String window);
+
+    /**
+     * Same rows as getStats, handed to the consumer while they are read from the database
+     * instead of being collected into a list. Counts are always exact.
+     */
+    void streamStats(LocalDateTime start,
+                     LocalDateTime end,
+                     List<String> uris,
+                     boolean unique,
+                     Consumer<ViewStatsDto> consumer);
 }
\ No newline at end of file
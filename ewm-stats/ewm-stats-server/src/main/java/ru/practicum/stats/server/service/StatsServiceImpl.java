@@ -2,47 +2,362 @@ package ru.practicum.stats.server.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.stats.dto.EndpointHitDto;
+import ru.practicum.stats.dto.TopViewStatsDto;
 import ru.practicum.stats.dto.ViewStatsDto;
 import ru.practicum.stats.server.exceptions.ValidationException;
 import ru.practicum.stats.server.mapper.EndpointHitMapper;
-import ru.practicum.stats.server.repository.StatsRepository;
+import ru.practicum.stats.server.model.RollupGranularity;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+import ru.practicum.stats.server.repository.HitRollupRepository;
+import ru.practicum.stats.server.repository.StatsStreamJdbcRepository;
+import ru.practicum.stats.server.sketch.HyperLogLog;
+import ru.practicum.stats.server.sketch.IpBitmaps;
+import ru.practicum.stats.server.storage.HitStore;
+import ru.practicum.stats.server.storage.HotHitWindow;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class StatsServiceImpl implements StatsService {
 
-    private final StatsRepository repository;
+    private static final int MAX_TOP_K = 100;
+
+    /**
+     * Uris per query when a pattern expands to many; larger filters are split into chunks.
+     */
+    private static final int MAX_URIS_PER_QUERY = 1000;
+
+    private final HitStore hitStore;
+    private final HotHitWindow hotWindow;
+    private final HitRollupRepository rollupRepository;
+    private final HitRollupJdbcRepository rollupJdbcRepository;
+    private final HitBatchWriter hitWriter;
+    private final HitTotals hitTotals;
+    private final StatsStreamJdbcRepository streamRepository;
+    private final TopHits topHits;
+    private final UriTrie uriTrie;
 
     @Override
     public void saveHit(EndpointHitDto dto) {
         log.debug("Saving hit: {}", dto);
-        repository.save(EndpointHitMapper.toEntity(dto));
+        validate(dto);
+        awaitCommit(hitWriter.write(List.of(EndpointHitMapper.toEntity(dto))));
+    }
+
+    /**
+     * Stores hits through the group-commit writer and returns once they are committed.
+     */
+    @Override
+    public void saveHits(List<EndpointHitDto> dtos) {
+        log.debug("Saving {} hits", dtos.size());
+        if (dtos.isEmpty()) {
+            return;
+        }
+        dtos.forEach(this::validate);
+
+        awaitCommit(hitWriter.write(dtos.stream().map(EndpointHitMapper::toEntity).toList()));
+    }
+
+    private void validate(EndpointHitDto dto) {
+        if (dto == null || dto.getApp() == null || dto.getUri() == null
+                || dto.getIp() == null || dto.getTimestamp() == null) {
+            throw new ValidationException("Hit must have app, uri, ip and timestamp");
+        }
+    }
+
+    private void awaitCommit(CompletableFuture<Void> commit) {
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     @Override
     public List<ViewStatsDto> getStats(LocalDateTime start,
                                        LocalDateTime end,
                                        List<String> uris,
-                                       boolean unique) {
-        log.debug("Fetching stats: start={}, end={}, uris={}, unique={}",
-                start, end, uris, unique);
+                                       boolean unique,
+                                       boolean approximate,
+                                       StatsPage page) {
+        log.debug("Fetching stats: start={}, end={}, uris={}, unique={}, approximate={}, limit={}",
+                start, end, uris, unique, approximate, page.getLimit());
+
+        if (start.isAfter(end)) {
+            throw new ValidationException("Start must be before end");
+        }
+
+        List<String> filter = resolveUris(uris);
+        if (filter != null && filter.isEmpty()) {
+            return List.of();
+        }
+
+        if (hitTotals.covers(start, end)) {
+            log.debug("Stats served from all-time counters");
+            return toStats(hitTotals.count(filter, unique), page);
+        }
+
+        if (hotWindow.covers(start)) {
+            log.debug("Stats served from the hot window");
+            return toStats(hotWindow.count(start, end, filter, unique), page);
+        }
+
+        if (!unique) {
+            if (page.isUnpaged()) {
+                return countFromRollups(start, end, filter);
+            }
+            return hitStore.isInDatabase()
+                    ? pageFromRollups(start, end, filter, page)
+                    : page.select(countFromRollups(start, end, filter));
+        }
+
+        if (approximate) {
+            return estimateUniqueFromSketches(start, end, filter, page);
+        }
+
+        return countUniqueFromBitmaps(start, end, filter, page);
+    }
+
+    @Override
+    public List<TopViewStatsDto> getTop(int k, String window) {
+        if (k < 1 || k > MAX_TOP_K) {
+            throw new ValidationException("k must be between 1 and " + MAX_TOP_K);
+        }
+        TopHits.Window topWindow = TopHits.Window.of(window)
+                .orElseThrow(() -> new ValidationException("Unknown window: " + window + ", expected 5m, 1h or 24h"));
+
+        return topHits.top(topWindow, k);
+    }
+
+    /**
+     * Streams the stats aggregated and sorted by the database, so memory use does not grow
+     * with the number of rows. Non-unique counts use the rollup plan in a single query,
+     * unique counts are COUNT(DISTINCT) over the raw hits. When the raw hits are not in
+     * the database the rows are computed as for getStats and then passed on.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStats(LocalDateTime start,
+                            LocalDateTime end,
+                            List<String> uris,
+                            boolean unique,
+                            Consumer<ViewStatsDto> consumer) {
+        log.debug("Streaming stats: start={}, end={}, uris={}, unique={}", start, end, uris, unique);
 
         if (start.isAfter(end)) {
             throw new ValidationException("Start must be before end");
         }
 
-        List<ViewStatsDto> result = (uris == null || uris.isEmpty())
-                ? (unique ? repository.getStatsUniqueNoUri(start, end)
-                : repository.getStatsNoUri(start, end))
-                : (unique ? repository.getStatsUnique(start, end, uris)
-                : repository.getStats(start, end, uris));
+        if (!hitStore.isInDatabase()) {
+            getStats(start, end, uris, unique, false, StatsPage.unpaged()).forEach(consumer);
+            return;
+        }
+
+        List<String> filter = resolveUris(uris);
+        if (filter != null && filter.isEmpty()) {
+            return;
+        }
+        if (filter != null && filter.size() > MAX_URIS_PER_QUERY) {
+            // chunks would break the order of the stream: read all uris and drop the others here
+            Set<String> wanted = new HashSet<>(filter);
+            Consumer<ViewStatsDto> target = consumer;
+            consumer = row -> {
+                if (wanted.contains(row.getUri())) {
+                    target.accept(row);
+                }
+            };
+            filter = null;
+        }
 
-        return result;
+        if (unique) {
+            streamRepository.streamUniqueHits(start, end, filter, consumer);
+        } else {
+            streamRepository.streamHits(StatsRangePlan.of(start, end), filter, StatsPage.unpaged(), consumer);
+        }
+    }
+
+    /**
+     * The uris to filter by with patterns such as /events/* expanded through the uri trie,
+     * or null for all uris. An empty list means nothing matched.
+     */
+    private List<String> resolveUris(List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return null;
+        }
+        if (uris.stream().noneMatch(UriTrie::isPattern)) {
+            return uris;
+        }
+
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String uri : uris) {
+            if (!UriTrie.isPattern(uri)) {
+                resolved.add(uri);
+            } else if (uri.chars().allMatch(c -> c == UriTrie.WILDCARD)) {
+                return null;
+            } else {
+                resolved.addAll(uriTrie.match(uri));
+            }
+        }
+        log.debug("Uri patterns {} matched {} uris", uris, resolved.size());
+        return new ArrayList<>(resolved);
+    }
+
+    /**
+     * The uri filter split into query-sized chunks; a single null chunk for all uris.
+     */
+    private static List<List<String>> chunks(List<String> uris) {
+        if (uris == null || uris.size() <= MAX_URIS_PER_QUERY) {
+            return Collections.singletonList(uris);
+        }
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < uris.size(); i += MAX_URIS_PER_QUERY) {
+            chunks.add(uris.subList(i, Math.min(i + MAX_URIS_PER_QUERY, uris.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Counts hits using whole rollup buckets for the bulk of the range and raw hits
+     * only for the ragged edges (see StatsRangePlan). Gives the same numbers as
+     * counting the raw hits of the whole range.
+     */
+    private List<ViewStatsDto> countFromRollups(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        StatsRangePlan plan = StatsRangePlan.of(start, end);
+        Map<String, Map<String, Long>> hits = new HashMap<>();
+
+        for (List<String> chunk : chunks(uris)) {
+            for (StatsRangePlan.Segment segment : plan.getRollupSegments()) {
+                addHits(hits, rollupRepository.sumHits(
+                        segment.getGranularity(), segment.getFrom(), segment.getTo(), chunk));
+            }
+            for (StatsRangePlan.Segment segment : plan.getRawSegments()) {
+                addHits(hits, hitStore.countHits(segment.getFrom(), segment.getTo(), chunk));
+            }
+        }
+
+        log.debug("Stats planned as {} rollup and {} raw segments",
+                plan.getRollupSegments().size(), plan.getRawSegments().size());
+        return toStats(hits, StatsPage.unpaged());
+    }
+
+    /**
+     * Same counts as countFromRollups, but summed, sorted and cut to the page by the database
+     * in a single query. With a chunked uri filter each chunk gives its own page, and the
+     * page is taken again from their union.
+     */
+    private List<ViewStatsDto> pageFromRollups(LocalDateTime start,
+                                               LocalDateTime end,
+                                               List<String> uris,
+                                               StatsPage page) {
+        StatsRangePlan plan = StatsRangePlan.of(start, end);
+        List<List<String>> chunks = chunks(uris);
+
+        List<ViewStatsDto> result = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            streamRepository.streamHits(plan, chunk, page, result::add);
+        }
+        return chunks.size() == 1 ? result : page.select(result);
+    }
+
+    /**
+     * Estimates unique IPs by merging the HyperLogLog sketches of whole hour and day
+     * buckets and adding the IPs of the raw hits at the edges of the range.
+     * Relative standard error is about 1.6% (see HyperLogLog).
+     */
+    private List<ViewStatsDto> estimateUniqueFromSketches(LocalDateTime start,
+                                                          LocalDateTime end,
+                                                          List<String> uris,
+                                                          StatsPage page) {
+        StatsRangePlan plan = StatsRangePlan.of(start, end, RollupGranularity.HOUR);
+        Map<String, Map<String, HyperLogLog>> sketches = new HashMap<>();
+
+        for (List<String> chunk : chunks(uris)) {
+            for (StatsRangePlan.Segment segment : plan.getRollupSegments()) {
+                rollupJdbcRepository.forEachSketch(segment.getGranularity(), segment.getFrom(), segment.getTo(), chunk,
+                        (app, uri, sketch) -> sketchOf(sketches, app, uri).merge(HyperLogLog.fromBytes(sketch)));
+            }
+            for (StatsRangePlan.Segment segment : plan.getRawSegments()) {
+                hitStore.forEachDistinctIp(segment.getFrom(), segment.getTo(), chunk,
+                        (app, uri, ipId, ip) -> sketchOf(sketches, app, uri).add(ip));
+            }
+        }
+
+        Map<String, Map<String, Long>> estimates = new HashMap<>();
+        sketches.forEach((app, byUri) -> byUri.forEach((uri, sketch) ->
+                estimates.computeIfAbsent(app, a -> new HashMap<>()).put(uri, sketch.estimate())));
+        return toStats(estimates, page);
+    }
+
+    /**
+     * Counts unique IPs exactly by OR-ing the IP bitmaps of whole day buckets and adding
+     * the IP ids of the raw hits at the edges of the range.
+     * Gives the same numbers as counting distinct IPs of the raw hits of the whole range.
+     */
+    private List<ViewStatsDto> countUniqueFromBitmaps(LocalDateTime start,
+                                                      LocalDateTime end,
+                                                      List<String> uris,
+                                                      StatsPage page) {
+        StatsRangePlan plan = StatsRangePlan.of(start, end, RollupGranularity.DAY);
+        Map<String, Map<String, RoaringBitmap>> bitmaps = new HashMap<>();
+
+        for (List<String> chunk : chunks(uris)) {
+            for (StatsRangePlan.Segment segment : plan.getRollupSegments()) {
+                rollupJdbcRepository.forEachBitmap(segment.getFrom(), segment.getTo(), chunk,
+                        (app, uri, bitmap) -> bitmapOf(bitmaps, app, uri).or(IpBitmaps.fromBytes(bitmap)));
+            }
+            for (StatsRangePlan.Segment segment : plan.getRawSegments()) {
+                hitStore.forEachDistinctIp(segment.getFrom(), segment.getTo(), chunk,
+                        (app, uri, ipId, ip) -> bitmapOf(bitmaps, app, uri).add(ipId));
+            }
+        }
+
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        bitmaps.forEach((app, byUri) -> byUri.forEach((uri, bitmap) ->
+                counts.computeIfAbsent(app, a -> new HashMap<>()).put(uri, bitmap.getLongCardinality())));
+        return toStats(counts, page);
+    }
+
+    private RoaringBitmap bitmapOf(Map<String, Map<String, RoaringBitmap>> bitmaps, String app, String uri) {
+        return bitmaps.computeIfAbsent(app, a -> new HashMap<>())
+                .computeIfAbsent(uri, u -> new RoaringBitmap());
+    }
+
+    private HyperLogLog sketchOf(Map<String, Map<String, HyperLogLog>> sketches, String app, String uri) {
+        return sketches.computeIfAbsent(app, a -> new HashMap<>())
+                .computeIfAbsent(uri, u -> new HyperLogLog());
+    }
+
+    private List<ViewStatsDto> toStats(Map<String, Map<String, Long>> hits, StatsPage page) {
+        List<ViewStatsDto> rows = new ArrayList<>();
+        hits.forEach((app, byUri) -> byUri.forEach((uri, count) ->
+                rows.add(new ViewStatsDto(app, uri, count))));
+        return page.select(rows);
+    }
+
+    private void addHits(Map<String, Map<String, Long>> hits, List<ViewStatsDto> part) {
+        for (ViewStatsDto row : part) {
+            hits.computeIfAbsent(row.getApp(), app -> new HashMap<>())
+                    .merge(row.getUri(), row.getHits(), Long::sum);
+        }
     }
 }
\ No newline at end of file
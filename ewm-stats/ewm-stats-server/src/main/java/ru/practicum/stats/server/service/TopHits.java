@@ -0,0 +1,228 @@
+package ru.practicum.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.dto.TopViewStatsDto;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.model.RollupGranularity;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+import ru.practicum.stats.server.sketch.SpaceSaving;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Most visited (app, uri) pairs of the last 5 minutes, hour and day, kept in memory.
+ * Each window is a ring of time slices with a Space-Saving summary per slice;
+ * HitBatchWriter adds every committed batch, a query merges the slices of the window.
+ * A window covers its full length plus the current, partly filled slice.
+ * At startup the slices are filled from the rollups whose buckets fit into them (minute
+ * rollups for the 5 minute and hour windows, hour rollups for the day), so the windows
+ * are complete right after a restart rather than only once they have run for their length.
+ */
+@Slf4j
+@Component
+@DependsOn("statsSchemaInitializer")
+public class TopHits {
+
+    @Getter
+    @AllArgsConstructor
+    public enum Window {
+        FIVE_MINUTES("5m", Duration.ofMinutes(5), Duration.ofMinutes(1), RollupGranularity.MINUTE),
+        HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(5), RollupGranularity.MINUTE),
+        DAY("24h", Duration.ofHours(24), Duration.ofHours(1), RollupGranularity.HOUR);
+
+        private final String code;
+        private final Duration length;
+        private final Duration slice;
+
+        /**
+         * Rollups the slices are filled from at startup; their buckets never span two slices.
+         */
+        private final RollupGranularity seed;
+
+        public static Optional<Window> of(String code) {
+            return Arrays.stream(values()).filter(window -> window.code.equals(code)).findFirst();
+        }
+    }
+
+    private final HitRollupJdbcRepository rollupRepository;
+    private final Map<Window, SlidingSummary> windows = new EnumMap<>(Window.class);
+
+    public TopHits(HitRollupJdbcRepository rollupRepository,
+                   @Value("${stats.top.capacity:1000}") int capacity) {
+        this.rollupRepository = rollupRepository;
+        for (Window window : Window.values()) {
+            windows.put(window, new SlidingSummary(window, capacity));
+        }
+    }
+
+    /**
+     * Fills the live slices of every window from the rollups. Runs before HitBatchWriter
+     * starts, so no committed hit is counted twice.
+     */
+    @PostConstruct
+    public void load() {
+        long now = epochSecond(LocalDateTime.now());
+        windows.forEach((window, summary) -> {
+            long[] rows = new long[1];
+            rollupRepository.forEachRollupSince(window.getSeed(), summary.start(now), (app, uri, bucketStart, hits) -> {
+                summary.add(new Key(app, uri), epochSecond(bucketStart), hits, now);
+                rows[0]++;
+            });
+            log.info("Top hits window {} loaded from {} {} rollups", window.getCode(), rows[0], window.getSeed());
+        });
+    }
+
+    /**
+     * Adds committed hits. Hits older than a window are ignored by it,
+     * hits dated in the future count towards the current slice.
+     */
+    public void record(List<EndpointHit> hits) {
+        long now = epochSecond(LocalDateTime.now());
+        windows.values().forEach(summary -> summary.add(hits, now));
+    }
+
+    /**
+     * The k pairs with the most hits in the window, most visited first.
+     */
+    public List<TopViewStatsDto> top(Window window, int k) {
+        return windows.get(window).top(k, epochSecond(LocalDateTime.now()));
+    }
+
+    private static long epochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @lombok.Value
+    private static class Key {
+        String app;
+        String uri;
+    }
+
+    private static class SlidingSummary {
+        private final long sliceSeconds;
+        private final int capacity;
+        private final long[] sliceIndexes;
+        private final SpaceSaving<Key>[] slices;
+
+        @SuppressWarnings("unchecked")
+        SlidingSummary(Window window, int capacity) {
+            this.sliceSeconds = window.getSlice().toSeconds();
+            this.capacity = capacity;
+            int size = (int) (window.getLength().toSeconds() / sliceSeconds) + 1;
+            this.sliceIndexes = new long[size];
+            this.slices = new SpaceSaving[size];
+        }
+
+        /**
+         * Start of the oldest live slice.
+         */
+        LocalDateTime start(long now) {
+            long first = now / sliceSeconds - slices.length + 1;
+            return LocalDateTime.ofEpochSecond(first * sliceSeconds, 0, ZoneOffset.UTC);
+        }
+
+        /**
+         * Adds hits of one key that happened at the given epoch second.
+         */
+        synchronized void add(Key key, long second, long hits, long now) {
+            long current = now / sliceSeconds;
+            long index = Math.min(second / sliceSeconds, current);
+            if (index > current - slices.length) {
+                SpaceSaving<Key> slice = slice(index);
+                if (slice != null) {
+                    slice.add(key, hits);
+                }
+            }
+        }
+
+        synchronized void add(List<EndpointHit> hits, long now) {
+            long current = now / sliceSeconds;
+
+            Map<Long, Map<Key, Long>> bySlice = new HashMap<>();
+            for (EndpointHit hit : hits) {
+                long index = Math.min(epochSecond(hit.getTimestamp()) / sliceSeconds, current);
+                if (index > current - slices.length) {
+                    bySlice.computeIfAbsent(index, i -> new HashMap<>())
+                            .merge(new Key(hit.getApp(), hit.getUri()), 1L, Long::sum);
+                }
+            }
+
+            bySlice.forEach((index, counts) -> {
+                SpaceSaving<Key> slice = slice(index);
+                if (slice != null) {
+                    counts.forEach(slice::add);
+                }
+            });
+        }
+
+        /**
+         * Summary of the slice, replacing whatever older slice used the slot;
+         * null when the slot already holds a newer slice.
+         */
+        private SpaceSaving<Key> slice(long index) {
+            int slot = (int) Math.floorMod(index, (long) slices.length);
+            if (slices[slot] == null || sliceIndexes[slot] < index) {
+                slices[slot] = new SpaceSaving<>(capacity);
+                sliceIndexes[slot] = index;
+            }
+            return sliceIndexes[slot] == index ? slices[slot] : null;
+        }
+
+        /**
+         * Sums the counters of the live slices. A key missing from a full slice may still
+         * have occurred there up to that slice's minimum count, which goes into maxHits.
+         */
+        synchronized List<TopViewStatsDto> top(int k, long now) {
+            long current = now / sliceSeconds;
+
+            Map<Key, long[]> merged = new HashMap<>();
+            long minCountSum = 0;
+            for (int slot = 0; slot < slices.length; slot++) {
+                SpaceSaving<Key> slice = slices[slot];
+                if (slice == null || sliceIndexes[slot] <= current - slices.length) {
+                    continue;
+                }
+
+                long minCount = slice.minCount();
+                minCountSum += minCount;
+                for (SpaceSaving.Counter<Key> counter : slice.getCounters()) {
+                    long[] bounds = merged.computeIfAbsent(counter.getKey(), key -> new long[3]);
+                    bounds[0] += counter.getCount();
+                    bounds[1] += counter.getCount() - counter.getError();
+                    bounds[2] += minCount;
+                }
+            }
+
+            List<TopViewStatsDto> result = new ArrayList<>(merged.size());
+            long untracked = minCountSum;
+            merged.forEach((key, bounds) -> result.add(TopViewStatsDto.builder()
+                    .app(key.getApp())
+                    .uri(key.getUri())
+                    .hits(bounds[0])
+                    .minHits(bounds[1])
+                    .maxHits(bounds[0] + untracked - bounds[2])
+                    .build()));
+
+            result.sort(Comparator.comparing(TopViewStatsDto::getHits).reversed()
+                    .thenComparing(TopViewStatsDto::getApp)
+                    .thenComparing(TopViewStatsDto::getUri));
+            return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package ru.practicum.stats.server.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.server.model.NameDictionary;
+import ru.practicum.stats.server.repository.NameDictionaryJdbcRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Every uri of the uri dictionary in a character trie, used to expand uri patterns
+ * such as /events/* into the uris they match. In a pattern '*' stands for any run of
+ * characters, '/' included. Loaded at startup; HitBatchWriter adds the uris of
+ * committed batches.
+ */
+@Slf4j
+@Component
+@DependsOn("statsSchemaInitializer")
+@RequiredArgsConstructor
+public class UriTrie {
+
+    public static final char WILDCARD = '*';
+
+    private final NameDictionaryJdbcRepository repository;
+
+    private final Node root = new Node(0);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nodeCount = 1;
+    private int size;
+
+    @PostConstruct
+    public void load() {
+        List<String> uris = new ArrayList<>();
+        repository.forEachName(NameDictionary.URI, uris::add);
+        addAll(uris);
+        log.info("Uri trie loaded: {} uris, {} nodes", size, nodeCount);
+    }
+
+    public static boolean isPattern(String uri) {
+        return uri.indexOf(WILDCARD) >= 0;
+    }
+
+    public void addAll(Collection<String> uris) {
+        lock.writeLock().lock();
+        try {
+            for (String uri : uris) {
+                Node node = root;
+                for (int i = 0; i < uri.length(); i++) {
+                    Node child = node.child(uri.charAt(i));
+                    if (child == null) {
+                        child = new Node(nodeCount++);
+                        node.add(uri.charAt(i), child);
+                    }
+                    node = child;
+                }
+                if (!node.terminal) {
+                    node.terminal = true;
+                    size++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Known uris matching the pattern. A pattern without wildcards matches itself only if known.
+     */
+    public List<String> match(String pattern) {
+        List<String> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            int wildcard = pattern.indexOf(WILDCARD);
+            if (wildcard == pattern.length() - 1) {
+                // plain prefix: walk down to it and take the whole subtree
+                String prefix = pattern.substring(0, wildcard);
+                Node node = root;
+                for (int i = 0; i < prefix.length() && node != null; i++) {
+                    node = node.child(prefix.charAt(i));
+                }
+                if (node != null) {
+                    collect(node, new StringBuilder(prefix), result);
+                }
+            } else {
+                match(root, new StringBuilder(), pattern, 0, new HashSet<>(), result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private void collect(Node node, StringBuilder path, List<String> result) {
+        if (node.terminal) {
+            result.add(path.toString());
+        }
+        for (int i = 0; i < node.size; i++) {
+            path.append(node.labels[i]);
+            collect(node.children[i], path, result);
+            path.setLength(path.length() - 1);
+        }
+    }
+
+    /**
+     * Matches pattern[position..] against the subtree of node. Every (node, position) pair is
+     * visited once, so runs of wildcards do not blow up the search.
+     */
+    private void match(Node node,
+                       StringBuilder path,
+                       String pattern,
+                       int position,
+                       Set<Long> visited,
+                       List<String> result) {
+        if (!visited.add((long) node.id * (pattern.length() + 1) + position)) {
+            return;
+        }
+
+        if (position == pattern.length()) {
+            if (node.terminal) {
+                result.add(path.toString());
+            }
+            return;
+        }
+
+        char c = pattern.charAt(position);
+        if (c == WILDCARD) {
+            match(node, path, pattern, position + 1, visited, result);
+            for (int i = 0; i < node.size; i++) {
+                path.append(node.labels[i]);
+                match(node.children[i], path, pattern, position, visited, result);
+                path.setLength(path.length() - 1);
+            }
+        } else {
+            Node child = node.child(c);
+            if (child != null) {
+                path.append(c);
+                match(child, path, pattern, position + 1, visited, result);
+                path.setLength(path.length() - 1);
+            }
+        }
+    }
+
+    /**
+     * Children are kept in sorted arrays: most nodes of a uri trie have one child.
+     */
+    private static class Node {
+        private final int id;
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private int size;
+        private boolean terminal;
+
+        Node(int id) {
+            this.id = id;
+        }
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, 0, size, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        void add(char label, Node child) {
+            int insertAt = -Arrays.binarySearch(labels, 0, size, label) - 1;
+            if (size == labels.length) {
+                int capacity = Math.max(1, size * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, insertAt, labels, insertAt + 1, size - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, size - insertAt);
+
+            labels[insertAt] = label;
+            children[insertAt] = child;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.stats.server.sketch;
+
+import java.util.UUID;
+
+/**
+ * Bloom filter of UUIDs sized for an expected number of insertions and false positive rate.
+ * Never reports an added id as absent; reports an absent one as present with about the
+ * configured probability while no more than the expected number of ids were added.
+ * The k bit positions come from two 64-bit hashes (Kirsch and Mitzenmacher). Not thread-safe.
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long size;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+        this.bitCount = (long) bits.length * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+    }
+
+    public void add(UUID id) {
+        long hash1 = mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+        long hash2 = mix(hash1 ^ id.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        size++;
+    }
+
+    public boolean mightContain(UUID id) {
+        long hash1 = mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+        long hash2 = mix(hash1 ^ id.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of ids added, counting repeated ones each time.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Finalizer of MurmurHash3's 64-bit variant.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
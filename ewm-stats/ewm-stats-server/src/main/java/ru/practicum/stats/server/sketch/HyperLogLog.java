@@ -0,0 +1,134 @@
+package ru.practicum.stats.server.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog distinct counter with 2^12 registers.
+ * The relative standard error is 1.04 / sqrt(4096) ≈ 1.6%, so about 95% of estimates
+ * are within ±3.3% of the true count; small counts (below ~10 000) use linear
+ * counting and are usually exact or off by one or two.
+ * Sketches are mergeable: the union of two sketches is the register-wise maximum.
+ * Serialized sparsely while few registers are set, so sketches of rarely visited
+ * pages stay a few bytes long.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int SPARSE_ENTRY_BYTES = 3;
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), Long.SIZE - PRECISION) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+
+        if (used * SPARSE_ENTRY_BYTES < REGISTERS) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + used * SPARSE_ENTRY_BYTES);
+            buffer.put(SPARSE);
+            for (int i = 0; i < REGISTERS; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i);
+                    buffer.put(registers[i]);
+                }
+            }
+            return buffer.array();
+        }
+
+        byte[] bytes = new byte[1 + REGISTERS];
+        bytes[0] = DENSE;
+        System.arraycopy(registers, 0, bytes, 1, REGISTERS);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        byte[] registers = new byte[REGISTERS];
+        if (bytes == null || bytes.length == 0) {
+            return new HyperLogLog(registers);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() == DENSE) {
+            buffer.get(registers);
+        } else {
+            while (buffer.remaining() >= SPARSE_ENTRY_BYTES) {
+                int index = buffer.getShort() & 0xFFFF;
+                registers[index] = buffer.get();
+            }
+        }
+        return new HyperLogLog(registers);
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer, which spreads
+     * similar inputs such as neighbouring IP addresses over all bits.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a87cdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.practicum.stats.server.sketch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Space-Saving heavy hitters summary (Metwally et al.) keeping at most capacity counters.
+ * When a new key arrives and all counters are taken, it replaces the key with the
+ * smallest count and inherits that count as its possible overestimate (error).
+ * For every tracked key, count - error <= true count <= count; an untracked key
+ * occurred at most minCount() times. Any key seen more than total / capacity times
+ * is tracked. Not thread-safe.
+ */
+public final class SpaceSaving<K> {
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final TreeMap<Long, Set<Counter<K>>> byCount = new TreeMap<>();
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public void add(K key, long occurrences) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            unlink(counter);
+            counter.count += occurrences;
+            link(counter);
+            return;
+        }
+
+        long error = 0;
+        if (counters.size() == capacity) {
+            Map.Entry<Long, Set<Counter<K>>> smallest = byCount.firstEntry();
+            Counter<K> evicted = smallest.getValue().iterator().next();
+            unlink(evicted);
+            counters.remove(evicted.key);
+            error = evicted.count;
+        }
+
+        counter = new Counter<>(key, error + occurrences, error);
+        counters.put(key, counter);
+        link(counter);
+    }
+
+    /**
+     * Upper bound of the count of any key not tracked: 0 until the summary is full.
+     */
+    public long minCount() {
+        return counters.size() < capacity ? 0 : byCount.firstKey();
+    }
+
+    public Collection<Counter<K>> getCounters() {
+        return Collections.unmodifiableCollection(counters.values());
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    private void link(Counter<K> counter) {
+        byCount.computeIfAbsent(counter.count, c -> new LinkedHashSet<>()).add(counter);
+    }
+
+    private void unlink(Counter<K> counter) {
+        Set<Counter<K>> sameCount = byCount.get(counter.count);
+        sameCount.remove(counter);
+        if (sameCount.isEmpty()) {
+            byCount.remove(counter.count);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Counter<K> {
+        private final K key;
+        private long count;
+        private final long error;
+    }
+}
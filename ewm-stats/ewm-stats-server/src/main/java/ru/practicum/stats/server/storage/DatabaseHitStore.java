@@ -0,0 +1,77 @@
+package ru.practicum.stats.server.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.repository.HitIdJdbcRepository;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+import ru.practicum.stats.server.repository.HitTotalsJdbcRepository;
+import ru.practicum.stats.server.repository.StatsRepository;
+import ru.practicum.stats.server.repository.StatsStreamJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Raw hits in the endpoint_hits table. The default engine.
+ */
+@Component
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "database", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseHitStore implements HitStore {
+
+    private final StatsRepository repository;
+    private final HitRollupJdbcRepository rollupRepository;
+    private final HitTotalsJdbcRepository totalsRepository;
+    private final StatsStreamJdbcRepository streamRepository;
+    private final HitIdJdbcRepository hitIdRepository;
+
+    @Override
+    public void append(List<EndpointHit> hits) {
+        repository.saveAll(hits);
+    }
+
+    @Override
+    public List<ViewStatsDto> countHits(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        return repository.countHits(from, to, uris);
+    }
+
+    @Override
+    public void forEachDistinctIp(LocalDateTime from,
+                                  LocalDateTime to,
+                                  List<String> uris,
+                                  HitRollupJdbcRepository.IpConsumer consumer) {
+        rollupRepository.forEachDistinctIp(from, to, uris, consumer);
+    }
+
+    @Override
+    public void forEachHitAfter(long lastHitId, Consumer<EndpointHit> consumer) {
+        totalsRepository.forEachHitAfter(lastHitId, consumer);
+    }
+
+    @Override
+    public void forEachHitSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        streamRepository.forEachHitSince(from, consumer);
+    }
+
+    @Override
+    public Set<UUID> findStoredHitIds(Collection<EndpointHit> hits) {
+        return hitIdRepository.findStored(hits);
+    }
+
+    @Override
+    public void forEachHitIdSince(LocalDateTime from, Consumer<UUID> consumer) {
+        hitIdRepository.forEachIdSince(from, consumer);
+    }
+
+    @Override
+    public boolean isInDatabase() {
+        return true;
+    }
+}
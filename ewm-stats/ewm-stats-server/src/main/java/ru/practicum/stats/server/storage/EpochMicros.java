@@ -0,0 +1,24 @@
+package ru.practicum.stats.server.storage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Hit timestamps as microseconds since the epoch, UTC: the precision endpoint_hits keeps.
+ */
+final class EpochMicros {
+
+    private static final long MICROS_PER_SECOND = 1_000_000;
+
+    private EpochMicros() {
+    }
+
+    static long of(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + dateTime.getNano() / 1_000;
+    }
+
+    static LocalDateTime toDateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+                (int) Math.floorMod(micros, MICROS_PER_SECOND) * 1_000, ZoneOffset.UTC);
+    }
+}
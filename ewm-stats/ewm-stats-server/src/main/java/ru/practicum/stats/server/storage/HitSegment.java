@@ -0,0 +1,361 @@
+package ru.practicum.stats.server.storage;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One append-only file of fixed-width hit rows, memory-mapped as a whole.
+ * <p>
+ * Header (32 bytes): magic, version, id of the first row, start of the roll period
+ * (epoch seconds), committed row count. Row (34 bytes): created (epoch microseconds, UTC),
+ * uri id, ip id, app id (unsigned short), client hit id (two longs, zero when absent).
+ * The id of a row is the first id plus its position. Version 1 segments have 18-byte rows
+ * without the hit id; they are still read but no longer appended to.
+ * <p>
+ * Rows past the committed count belong to a batch whose transaction has not committed;
+ * they are invisible to readers, ignored on open and overwritten by the next batch.
+ * A batch is flushed to disk before its transaction commits and published to readers after it.
+ * If the process dies in between, the header counts rows the database never committed;
+ * open drops the rows after the last id committed in the database (hit_segment_state).
+ * A sparse index keeps the min and max created of every block of rows, so that scans
+ * skip the blocks outside the range. Written by one thread, read by any.
+ */
+final class HitSegment implements Closeable {
+
+    static final int HEADER_SIZE = 32;
+    static final int ROW_SIZE = 34;
+    static final int BLOCK_ROWS = 4096;
+
+    private static final int MAGIC = 0x48495453;
+    private static final int VERSION = 2;
+    private static final int V1_ROW_SIZE = 18;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int FIRST_ID_OFFSET = 8;
+    private static final int PERIOD_OFFSET = 16;
+    private static final int ROWS_OFFSET = 24;
+
+    /**
+     * Receives the columns of a row; implementations should not allocate per row.
+     */
+    @FunctionalInterface
+    interface RowVisitor {
+        void visit(long id, long createdMicros, int uriId, int ipId, int appId);
+    }
+
+    /**
+     * Receives the creation time and client hit id of a row that has one.
+     */
+    @FunctionalInterface
+    interface HitIdVisitor {
+        void visit(long createdMicros, long hitIdHigh, long hitIdLow);
+    }
+
+    @Getter
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    @Getter
+    private final int capacity;
+    @Getter
+    private final long firstId;
+    @Getter
+    private final long period;
+    private final int version;
+    private final int rowSize;
+
+    private final AtomicLongArray blockMin;
+    private final AtomicLongArray blockMax;
+
+    private volatile int committedRows;
+    private volatile long minCreated = Long.MAX_VALUE;
+    private volatile long maxCreated = Long.MIN_VALUE;
+
+    /**
+     * Rows written so far, committed or not. Writer thread only.
+     */
+    private int writtenRows;
+
+    /**
+     * Rows dropped on open because the database never committed them.
+     */
+    @Getter
+    private int droppedRows;
+
+    private HitSegment(Path path, FileChannel channel, int version, int capacity, long firstId, long period)
+            throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.version = version;
+        this.rowSize = version == VERSION ? ROW_SIZE : V1_ROW_SIZE;
+        this.capacity = capacity;
+        this.firstId = firstId;
+        this.period = period;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * rowSize);
+
+        int blocks = (capacity + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        this.blockMin = new AtomicLongArray(blocks);
+        this.blockMax = new AtomicLongArray(blocks);
+        for (int i = 0; i < blocks; i++) {
+            blockMin.set(i, Long.MAX_VALUE);
+            blockMax.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * ROW_SIZE;
+    }
+
+    static HitSegment create(Path path, int capacity, long firstId, long period) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        HitSegment segment = new HitSegment(path, channel, VERSION, capacity, firstId, period);
+        segment.buffer.putInt(MAGIC_OFFSET, MAGIC);
+        segment.buffer.putInt(VERSION_OFFSET, VERSION);
+        segment.buffer.putLong(FIRST_ID_OFFSET, firstId);
+        segment.buffer.putLong(PERIOD_OFFSET, period);
+        segment.buffer.putLong(ROWS_OFFSET, 0);
+        segment.buffer.force(0, HEADER_SIZE);
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment and rebuilds its block index from the committed rows.
+     * Rows with ids above lastCommittedId are removed from the header.
+     */
+    static HitSegment open(Path path, long lastCommittedId) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.close();
+            throw new IOException("Not a hit segment: " + path);
+        }
+
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        int version = header.getInt(VERSION_OFFSET);
+        if (header.getInt(MAGIC_OFFSET) != MAGIC || (version != VERSION && version != 1)) {
+            channel.close();
+            throw new IOException("Unknown hit segment format: " + path);
+        }
+        int rowSize = version == VERSION ? ROW_SIZE : V1_ROW_SIZE;
+        if ((size - HEADER_SIZE) % rowSize != 0) {
+            channel.close();
+            throw new IOException("Not a hit segment: " + path);
+        }
+
+        int capacity = (int) ((size - HEADER_SIZE) / rowSize);
+        long firstId = header.getLong(FIRST_ID_OFFSET);
+        HitSegment segment = new HitSegment(path, channel, version, capacity, firstId, header.getLong(PERIOD_OFFSET));
+        int flushed = (int) Math.min(header.getLong(ROWS_OFFSET), capacity);
+        int rows = (int) Math.max(0, Math.min(flushed, lastCommittedId - firstId + 1));
+        if (rows < flushed) {
+            segment.buffer.putLong(ROWS_OFFSET, rows);
+            segment.buffer.force(ROWS_OFFSET, 8);
+            segment.droppedRows = flushed - rows;
+        }
+        segment.writtenRows = rows;
+        segment.index(0, rows);
+        segment.committedRows = rows;
+        return segment;
+    }
+
+    /**
+     * Whether rows can be appended; segments of an older format are read only.
+     */
+    boolean hasRoom(int rows) {
+        return version == VERSION && capacity - writtenRows >= rows;
+    }
+
+    /**
+     * Writes a row after the last one and returns its id. Not visible until commit.
+     */
+    long append(long createdMicros, int uriId, int ipId, int appId, long hitIdHigh, long hitIdLow) {
+        int offset = HEADER_SIZE + writtenRows * ROW_SIZE;
+        buffer.putLong(offset, createdMicros);
+        buffer.putInt(offset + 8, uriId);
+        buffer.putInt(offset + 12, ipId);
+        buffer.putShort(offset + 16, (short) appId);
+        buffer.putLong(offset + 18, hitIdHigh);
+        buffer.putLong(offset + 26, hitIdLow);
+        return firstId + writtenRows++;
+    }
+
+    /**
+     * Makes the rows written since the last commit durable and visible.
+     */
+    void commit() {
+        flush();
+        publish();
+    }
+
+    /**
+     * Forces the rows written since the last commit to disk and records them in the header,
+     * so that they survive a crash. Readers do not see them until publish.
+     */
+    void flush() {
+        int from = committedRows;
+        int to = writtenRows;
+        if (from == to) {
+            return;
+        }
+
+        buffer.force(HEADER_SIZE + from * rowSize, (to - from) * rowSize);
+        buffer.putLong(ROWS_OFFSET, to);
+        buffer.force(ROWS_OFFSET, 8);
+    }
+
+    /**
+     * Makes the flushed rows visible to readers.
+     */
+    void publish() {
+        int from = committedRows;
+        int to = writtenRows;
+        if (from == to) {
+            return;
+        }
+
+        index(from, to);
+        committedRows = to;
+    }
+
+    /**
+     * Drops the rows written since the last commit, and removes them from the header
+     * if they were already flushed.
+     */
+    void rollback() {
+        writtenRows = committedRows;
+        if (buffer.getLong(ROWS_OFFSET) != committedRows) {
+            buffer.putLong(ROWS_OFFSET, committedRows);
+            buffer.force(ROWS_OFFSET, 8);
+        }
+    }
+
+    int getCommittedRows() {
+        return committedRows;
+    }
+
+    long getNextId() {
+        return firstId + writtenRows;
+    }
+
+    /**
+     * Id of the last committed row, or firstId - 1 for an empty segment.
+     */
+    long getLastId() {
+        return firstId + committedRows - 1;
+    }
+
+    long getMaxCreated() {
+        return maxCreated;
+    }
+
+    boolean overlaps(long fromMicros, long toMicros) {
+        return committedRows > 0 && maxCreated >= fromMicros && minCreated < toMicros;
+    }
+
+    /**
+     * Visits the committed rows created in [fromMicros, toMicros), skipping blocks outside the range.
+     */
+    void scan(long fromMicros, long toMicros, RowVisitor visitor) {
+        int rows = committedRows;
+        for (int block = 0, start = 0; start < rows; block++, start += BLOCK_ROWS) {
+            if (blockMax.get(block) < fromMicros || blockMin.get(block) >= toMicros) {
+                continue;
+            }
+            int end = Math.min(start + BLOCK_ROWS, rows);
+            for (int row = start; row < end; row++) {
+                int offset = HEADER_SIZE + row * rowSize;
+                long created = buffer.getLong(offset);
+                if (created >= fromMicros && created < toMicros) {
+                    visit(row, offset, created, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the client hit ids of the committed rows created in [fromMicros, toMicros).
+     */
+    void scanHitIds(long fromMicros, long toMicros, HitIdVisitor visitor) {
+        if (version != VERSION) {
+            return;
+        }
+        int rows = committedRows;
+        for (int block = 0, start = 0; start < rows; block++, start += BLOCK_ROWS) {
+            if (blockMax.get(block) < fromMicros || blockMin.get(block) >= toMicros) {
+                continue;
+            }
+            int end = Math.min(start + BLOCK_ROWS, rows);
+            for (int row = start; row < end; row++) {
+                int offset = HEADER_SIZE + row * rowSize;
+                long created = buffer.getLong(offset);
+                long high = buffer.getLong(offset + 18);
+                long low = buffer.getLong(offset + 26);
+                if (created >= fromMicros && created < toMicros && (high != 0 || low != 0)) {
+                    visitor.visit(created, high, low);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the committed rows with ids above the given one, in id order.
+     */
+    void scanAfter(long id, RowVisitor visitor) {
+        int rows = committedRows;
+        for (int row = (int) Math.max(0, Math.min(rows, id - firstId + 1)); row < rows; row++) {
+            int offset = HEADER_SIZE + row * rowSize;
+            visit(row, offset, buffer.getLong(offset), visitor);
+        }
+    }
+
+    private void visit(int row, int offset, long created, RowVisitor visitor) {
+        visitor.visit(firstId + row, created,
+                buffer.getInt(offset + 8),
+                buffer.getInt(offset + 12),
+                Short.toUnsignedInt(buffer.getShort(offset + 16)));
+    }
+
+    private void index(int from, int to) {
+        long min = minCreated;
+        long max = maxCreated;
+        for (int row = from; row < to; row++) {
+            long created = buffer.getLong(HEADER_SIZE + row * rowSize);
+            int block = row / BLOCK_ROWS;
+            if (created < blockMin.get(block)) {
+                blockMin.set(block, created);
+            }
+            if (created > blockMax.get(block)) {
+                blockMax.set(block, created);
+            }
+            min = Math.min(min, created);
+            max = Math.max(max, created);
+        }
+        minCreated = min;
+        maxCreated = max;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Closes the segment and deletes its file. The mapping is released once the segment is no
+     * longer referenced, so a scan still running over it finishes normally.
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.delete(path);
+    }
+}
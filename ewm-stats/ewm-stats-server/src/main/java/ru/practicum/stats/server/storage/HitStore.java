@@ -0,0 +1,69 @@
+package ru.practicum.stats.server.storage;
+
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage of raw hits, selected by stats.storage.engine: "database" keeps them in
+ * endpoint_hits (DatabaseHitStore), "segments" in memory-mapped files (SegmentHitStore).
+ * Rollups, dictionaries and totals stay in the database either way.
+ */
+public interface HitStore {
+
+    /**
+     * Stores hits whose dictionary ids are set and assigns their ids.
+     * Called inside the writer transaction; the hits become visible when it commits.
+     */
+    void append(List<EndpointHit> hits);
+
+    /**
+     * Hits per app and uri with timestamps in [from, to).
+     *
+     * @param uris uris to include, or null for all
+     */
+    List<ViewStatsDto> countHits(LocalDateTime from, LocalDateTime to, List<String> uris);
+
+    /**
+     * Passes each distinct (app, uri, ip) of the hits in [from, to) to the consumer.
+     *
+     * @param uris uris to include, or null for all
+     */
+    void forEachDistinctIp(LocalDateTime from,
+                           LocalDateTime to,
+                           List<String> uris,
+                           HitRollupJdbcRepository.IpConsumer consumer);
+
+    /**
+     * Passes hits with ids above lastHitId in id order, with app, uri, ip id and timestamp set.
+     */
+    void forEachHitAfter(long lastHitId, Consumer<EndpointHit> consumer);
+
+    /**
+     * Passes hits created at or after from, in no particular order,
+     * with app, uri, their dictionary ids and timestamp set.
+     */
+    void forEachHitSince(LocalDateTime from, Consumer<EndpointHit> consumer);
+
+    /**
+     * Client hit ids of the given hits that are already stored.
+     */
+    Set<UUID> findStoredHitIds(Collection<EndpointHit> hits);
+
+    /**
+     * Passes the client hit ids of hits created at or after from.
+     */
+    void forEachHitIdSince(LocalDateTime from, Consumer<UUID> consumer);
+
+    /**
+     * Whether the hits are in endpoint_hits, so that SQL can aggregate them together with rollups.
+     */
+    boolean isInDatabase();
+}
@@ -0,0 +1,406 @@
+package ru.practicum.stats.server.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.server.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The hits of the last stats.hot.window (two days by default) in columnar primitive arrays,
+ * so that stats over recent ranges are answered in memory.
+ * <p>
+ * Rows live in fixed-size chunks of created (epoch micros), app id, uri id and ip id columns,
+ * appended in commit order by HitBatchWriter. The window covers every hit created at or after
+ * coveredFrom: it is loaded from the HitStore at startup and moves forward as old chunks are
+ * evicted. A query splits the chunks into row ranges, aggregates them in parallel on its own
+ * ForkJoinPool into per-task primitive maps and merges those pairwise.
+ * <p>
+ * A row takes 20 bytes of heap, so stats.hot.max-hits (2 million by default, about 40 MB)
+ * bounds the memory; once it is reached the window covers less than stats.hot.window.
+ */
+@Slf4j
+@Component
+@DependsOn("statsSchemaInitializer")
+public class HotHitWindow {
+
+    static final int CHUNK_ROWS = 1 << 16;
+
+    /**
+     * Rows scanned by one leaf task.
+     */
+    private static final int TASK_ROWS = 1 << 14;
+
+    private final HitStore hitStore;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration window;
+    private final long maxHits;
+    private final ForkJoinPool pool;
+
+    private final List<Chunk> chunks = new CopyOnWriteArrayList<>();
+    private final Map<Integer, String> appNames = new ConcurrentHashMap<>();
+    private final Map<Integer, String> uriNames = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+
+    /**
+     * Chunk being filled. Changed under the lock of this object, like the chunk list.
+     */
+    private Chunk current;
+
+    /**
+     * Start of the covered range in epoch micros; Long.MAX_VALUE while nothing is covered.
+     */
+    private volatile long coveredFrom = Long.MAX_VALUE;
+
+    /**
+     * Hits created before this are skipped when appended; lags behind coveredFrom during the load.
+     */
+    private long appendFrom = Long.MIN_VALUE;
+
+    public HotHitWindow(HitStore hitStore,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${stats.hot.enabled:true}") boolean enabled,
+                        @Value("${stats.hot.window:P2D}") Duration window,
+                        @Value("${stats.hot.max-hits:2000000}") long maxHits,
+                        @Value("${stats.hot.parallelism:0}") int parallelism) {
+        this.hitStore = hitStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.window = window;
+        this.maxHits = maxHits;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime from = LocalDateTime.now().minus(window);
+        List<EndpointHit> batch = new ArrayList<>(CHUNK_ROWS);
+        transactionTemplate.executeWithoutResult(status -> hitStore.forEachHitSince(from, hit -> {
+            batch.add(hit);
+            if (batch.size() == CHUNK_ROWS) {
+                append(batch);
+                batch.clear();
+            }
+        }));
+        append(batch);
+        appendFrom = EpochMicros.of(from);
+        coveredFrom = appendFrom;
+        evictOverLimit();
+
+        log.info("Hot hit window loaded: {} hits since {}", size(), EpochMicros.toDateTime(coveredFrom));
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Adds committed hits; hits created before the covered range are not needed and skipped.
+     * Called by the writer thread only.
+     */
+    public synchronized void record(List<EndpointHit> hits) {
+        if (enabled) {
+            append(hits);
+            evictOverLimit();
+        }
+    }
+
+    private void append(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            long created = EpochMicros.of(hit.getTimestamp());
+            if (created < appendFrom) {
+                continue;
+            }
+
+            appNames.putIfAbsent(hit.getAppId(), hit.getApp());
+            if (uriNames.putIfAbsent(hit.getUriId(), hit.getUri()) == null) {
+                uriIds.put(hit.getUri(), hit.getUriId());
+            }
+
+            if (current == null || current.size == CHUNK_ROWS) {
+                current = new Chunk();
+                chunks.add(current);
+            }
+            current.add(created, hit.getAppId(), hit.getUriId(), hit.getIpId());
+        }
+    }
+
+    /**
+     * Whether every hit created at or after start is in the window.
+     */
+    public boolean covers(LocalDateTime start) {
+        return enabled && EpochMicros.of(start) >= coveredFrom;
+    }
+
+    /**
+     * Hits (or unique visitors) by app and uri created in [start, end].
+     *
+     * @param uris uris to include, or null for all
+     */
+    public Map<String, Map<String, Long>> count(LocalDateTime start,
+                                                LocalDateTime end,
+                                                Collection<String> uris,
+                                                boolean unique) {
+        Map<String, Map<String, Long>> result = new HashMap<>();
+
+        RoaringBitmap uriFilter = null;
+        if (uris != null) {
+            uriFilter = new RoaringBitmap();
+            for (String uri : uris) {
+                Integer id = uriIds.get(uri);
+                if (id != null) {
+                    uriFilter.add(id);
+                }
+            }
+            if (uriFilter.isEmpty()) {
+                return result;
+            }
+        }
+
+        long fromMicros = EpochMicros.of(start);
+        long toMicros = EpochMicros.of(end) + 1;
+        List<Range> ranges = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            int size = chunk.size;
+            if (size > 0 && chunk.maxCreated >= fromMicros && chunk.minCreated < toMicros) {
+                for (int from = 0; from < size; from += TASK_ROWS) {
+                    ranges.add(new Range(chunk, from, Math.min(from + TASK_ROWS, size)));
+                }
+            }
+        }
+
+        Aggregate aggregate = pool.invoke(
+                new AggregateTask(ranges, 0, ranges.size(), fromMicros, toMicros, uriFilter, unique));
+        for (int i = 0; i < aggregate.keys.size(); i++) {
+            long key = aggregate.keys.keyAt(i);
+            long value = unique ? aggregate.visitors.get(i).getLongCardinality() : aggregate.counts[i];
+            result.computeIfAbsent(appNames.get((int) (key >>> 32)), app -> new HashMap<>())
+                    .put(uriNames.get((int) key), value);
+        }
+        return result;
+    }
+
+    /**
+     * Drops chunks whose hits are all older than the window, moving the covered range forward.
+     */
+    @Scheduled(fixedDelayString = "${stats.hot.evict-interval-ms:60000}")
+    public synchronized void evict() {
+        if (!enabled || coveredFrom == Long.MAX_VALUE) {
+            return;
+        }
+
+        long cutoff = EpochMicros.of(LocalDateTime.now().minus(window));
+        if (cutoff > coveredFrom) {
+            coveredFrom = cutoff;
+        }
+        appendFrom = coveredFrom;
+        List<Chunk> expired = chunks.stream()
+                .filter(chunk -> chunk.size == CHUNK_ROWS && chunk.maxCreated < cutoff)
+                .toList();
+        chunks.removeAll(expired);
+
+        if (!expired.isEmpty()) {
+            log.debug("Evicted {} hot window chunks, {} hits left", expired.size(), size());
+        }
+    }
+
+    /**
+     * Keeps at most maxHits rows by dropping the oldest chunks; the covered range
+     * then starts after the newest hit dropped.
+     */
+    private void evictOverLimit() {
+        boolean evicted = false;
+        while (size() > maxHits && chunks.size() > 1) {
+            Chunk oldest = chunks.remove(0);
+            coveredFrom = Math.max(coveredFrom, oldest.maxCreated + 1);
+            evicted = true;
+        }
+        if (evicted) {
+            log.warn("Hot hit window is over {} hits, covered range now starts at {}",
+                    maxHits, EpochMicros.toDateTime(coveredFrom));
+        }
+    }
+
+    private long size() {
+        long size = 0;
+        for (Chunk chunk : chunks) {
+            size += chunk.size;
+        }
+        return size;
+    }
+
+    /**
+     * Columns of up to CHUNK_ROWS hits. Written by one thread; readers see the rows below size.
+     */
+    private static final class Chunk {
+        private final long[] created = new long[CHUNK_ROWS];
+        private final int[] appIds = new int[CHUNK_ROWS];
+        private final int[] uriIds = new int[CHUNK_ROWS];
+        private final int[] ipIds = new int[CHUNK_ROWS];
+        private volatile long minCreated = Long.MAX_VALUE;
+        private volatile long maxCreated = Long.MIN_VALUE;
+        private volatile int size;
+
+        void add(long createdMicros, int appId, int uriId, int ipId) {
+            int row = size;
+            created[row] = createdMicros;
+            appIds[row] = appId;
+            uriIds[row] = uriId;
+            ipIds[row] = ipId;
+            if (createdMicros < minCreated) {
+                minCreated = createdMicros;
+            }
+            if (createdMicros > maxCreated) {
+                maxCreated = createdMicros;
+            }
+            size = row + 1;
+        }
+    }
+
+    private static final class Range {
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        Range(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Counts or visitor bitmaps by (app id, uri id) key, indexed like the keys.
+     */
+    private static final class Aggregate {
+        private final LongKeyIndex keys = new LongKeyIndex();
+        private long[] counts = new long[64];
+        private final List<RoaringBitmap> visitors = new ArrayList<>();
+
+        int slot(long key) {
+            int index = keys.indexOf(key);
+            if (index == counts.length) {
+                counts = Arrays.copyOf(counts, index * 2);
+            }
+            if (index == visitors.size()) {
+                visitors.add(null);
+            }
+            return index;
+        }
+
+        Aggregate merge(Aggregate other) {
+            for (int i = 0; i < other.keys.size(); i++) {
+                int index = slot(other.keys.keyAt(i));
+                counts[index] += other.counts[i];
+                RoaringBitmap theirs = other.visitors.get(i);
+                if (theirs != null) {
+                    RoaringBitmap ours = visitors.get(index);
+                    if (ours == null) {
+                        visitors.set(index, theirs);
+                    } else {
+                        ours.or(theirs);
+                    }
+                }
+            }
+            return this;
+        }
+    }
+
+    private static final class AggregateTask extends RecursiveTask<Aggregate> {
+        private final List<Range> ranges;
+        private final int from;
+        private final int to;
+        private final long fromMicros;
+        private final long toMicros;
+        private final RoaringBitmap uriFilter;
+        private final boolean unique;
+
+        AggregateTask(List<Range> ranges,
+                      int from,
+                      int to,
+                      long fromMicros,
+                      long toMicros,
+                      RoaringBitmap uriFilter,
+                      boolean unique) {
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.fromMicros = fromMicros;
+            this.toMicros = toMicros;
+            this.uriFilter = uriFilter;
+            this.unique = unique;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from <= 1) {
+                return to > from ? scan(ranges.get(from)) : new Aggregate();
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(ranges, from, middle, fromMicros, toMicros, uriFilter, unique);
+            AggregateTask right = new AggregateTask(ranges, middle, to, fromMicros, toMicros, uriFilter, unique);
+            left.fork();
+            Aggregate rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+
+        private Aggregate scan(Range range) {
+            Aggregate aggregate = new Aggregate();
+            Chunk chunk = range.chunk;
+            long[] created = chunk.created;
+            int[] appIds = chunk.appIds;
+            int[] uriIds = chunk.uriIds;
+            int[] ipIds = chunk.ipIds;
+
+            for (int row = range.from; row < range.to; row++) {
+                long time = created[row];
+                if (time < fromMicros || time >= toMicros) {
+                    continue;
+                }
+                int uriId = uriIds[row];
+                if (uriFilter != null && !uriFilter.contains(uriId)) {
+                    continue;
+                }
+
+                int index = aggregate.slot(((long) appIds[row] << 32) | (uriId & 0xFFFFFFFFL));
+                if (unique) {
+                    RoaringBitmap bitmap = aggregate.visitors.get(index);
+                    if (bitmap == null) {
+                        bitmap = new RoaringBitmap();
+                        aggregate.visitors.set(index, bitmap);
+                    }
+                    bitmap.add(ipIds[row]);
+                } else {
+                    aggregate.counts[index]++;
+                }
+            }
+            return aggregate;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.stats.server.storage;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to dense indexes 0, 1, 2, ... in insertion order,
+ * so that per-key values can live in plain arrays. Looking up an existing key allocates nothing.
+ * Not thread-safe.
+ */
+final class LongKeyIndex {
+
+    private static final int EMPTY = -1;
+
+    private long[] keys = new long[16];
+    private int[] slots = new int[32];
+    private int size;
+
+    LongKeyIndex() {
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * Index of the key, adding it with the next index if absent.
+     */
+    int indexOf(long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (slots[slot] != EMPTY) {
+            if (keys[slots[slot]] == key) {
+                return slots[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = key;
+        slots[slot] = size;
+        size++;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    long keyAt(int index) {
+        return keys[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys[i]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,543 @@
+package ru.practicum.stats.server.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.stats.dto.ViewStatsDto;
+import ru.practicum.stats.server.mapper.IpAddressMapper;
+import ru.practicum.stats.server.model.EndpointHit;
+import ru.practicum.stats.server.model.HitTotalsState;
+import ru.practicum.stats.server.model.IpDictionaryEntry;
+import ru.practicum.stats.server.model.NameDictionary;
+import ru.practicum.stats.server.repository.HitRollupJdbcRepository;
+import ru.practicum.stats.server.repository.HitSegmentJdbcRepository;
+import ru.practicum.stats.server.repository.HitTotalsJdbcRepository;
+import ru.practicum.stats.server.repository.IpDictionaryRepository;
+import ru.practicum.stats.server.repository.NameDictionaryJdbcRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Raw hits in append-only, memory-mapped segment files of fixed-width rows (see HitSegment),
+ * enabled with stats.storage.engine=segments. A new segment is started for every roll
+ * interval of arrival time, or when the current one is full.
+ * <p>
+ * Range queries scan the segments and blocks whose time span overlaps the range and
+ * aggregate by (app id, uri id) into primitive arrays; names are looked up in the
+ * dictionaries once per distinct id at the end. Hit ids continue after the last hit
+ * counted by hit_totals, so switching from the database engine keeps the totals replay intact.
+ * With stats.hits.retention-months set, segments older than the retention period are deleted
+ * daily, like the hit partitions of the database engine.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage.engine", havingValue = "segments")
+@DependsOn("statsSchemaInitializer")
+public class SegmentHitStore implements HitStore {
+
+    private static final String SEGMENT_PREFIX = "hits-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final int EMIT_CHUNK = 1000;
+
+    private final NameDictionaryJdbcRepository nameRepository;
+    private final IpDictionaryRepository ipRepository;
+    private final HitTotalsJdbcRepository totalsRepository;
+    private final HitSegmentJdbcRepository segmentRepository;
+    private final Path directory;
+    private final long rollSeconds;
+    private final int capacity;
+    private final int retentionMonths;
+
+    private final List<HitSegment> segments = new CopyOnWriteArrayList<>();
+
+    public SegmentHitStore(NameDictionaryJdbcRepository nameRepository,
+                           IpDictionaryRepository ipRepository,
+                           HitTotalsJdbcRepository totalsRepository,
+                           HitSegmentJdbcRepository segmentRepository,
+                           @Value("${stats.storage.segments.dir:data/segments}") String directory,
+                           @Value("${stats.storage.segments.roll-interval:PT1H}") Duration rollInterval,
+                           @Value("${stats.storage.segments.capacity:4194304}") int capacity,
+                           @Value("${stats.hits.retention-months:0}") int retentionMonths) {
+        if (capacity <= 0 || HitSegment.fileSize(capacity) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment capacity must be between 1 and "
+                    + (Integer.MAX_VALUE - HitSegment.HEADER_SIZE) / HitSegment.ROW_SIZE + " rows: " + capacity);
+        }
+        this.nameRepository = nameRepository;
+        this.ipRepository = ipRepository;
+        this.totalsRepository = totalsRepository;
+        this.segmentRepository = segmentRepository;
+        this.directory = Paths.get(directory);
+        this.rollSeconds = rollInterval.toSeconds();
+        this.capacity = capacity;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        long lastCommittedId = segmentRepository.findLastHitId();
+        List<HitSegment> opened = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(this::isSegmentFile).toList()) {
+                opened.add(HitSegment.open(file, lastCommittedId));
+            }
+        }
+        opened.sort(Comparator.comparingLong(HitSegment::getFirstId));
+        segments.addAll(opened);
+
+        long dropped = opened.stream().mapToLong(HitSegment::getDroppedRows).sum();
+        if (dropped > 0) {
+            log.warn("Dropped {} hits after id {} that were flushed to segments but not committed in the database",
+                    dropped, lastCommittedId);
+        }
+
+        long rows = opened.stream().mapToLong(HitSegment::getCommittedRows).sum();
+        log.info("Hit segments opened in {}: {} segments, {} hits", directory.toAbsolutePath(), opened.size(), rows);
+    }
+
+    private boolean isSegmentFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    @PreDestroy
+    public void close() {
+        for (HitSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.error("Failed to close hit segment {}", segment.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments whose hits were all created before the retention period, provided
+     * every hit in them is counted in the all-time counters snapshot. Rollups are written in the
+     * same transaction as the rows, so they already hold these hits. The current segment is kept.
+     */
+    @Scheduled(cron = "${stats.hits.partition-maintenance-cron:0 10 0 * * *}")
+    public void dropExpiredSegments() {
+        if (retentionMonths <= 0) {
+            return;
+        }
+        long cutoff = EpochMicros.of(LocalDate.now().withDayOfMonth(1).atStartOfDay().minusMonths(retentionMonths));
+        HitTotalsState state = totalsRepository.findState();
+        long snapshotted = state == null ? 0 : state.getLastHitId();
+
+        for (HitSegment segment : segments) {
+            if (segment == segments.getLast() || segment.getMaxCreated() >= cutoff) {
+                continue;
+            }
+            if (segment.getLastId() > snapshotted) {
+                log.warn("Hit segment {} is past retention but not in the totals snapshot yet", segment.getPath());
+                continue;
+            }
+
+            segments.remove(segment);
+            try {
+                segment.delete();
+                log.info("Deleted hit segment {} with {} hits", segment.getPath(), segment.getCommittedRows());
+            } catch (IOException e) {
+                log.error("Failed to delete hit segment {}", segment.getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the rows to the current segment; they are committed or dropped together with
+     * the surrounding transaction. The rows are forced to disk before the transaction commits
+     * and become visible after it; if it rolls back, they are removed from the segment again.
+     * The id of the last row is saved to hit_segment_state in the same transaction, so rows
+     * left behind by a crash between the flush and the database commit are dropped on open.
+     * Called by the writer thread only.
+     */
+    @Override
+    public void append(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+
+        long period = Math.floorDiv(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC), rollSeconds) * rollSeconds;
+        HitSegment segment = segments.isEmpty() ? null : segments.getLast();
+        if (segment == null || segment.getPeriod() != period || !segment.hasRoom(hits.size())) {
+            segment = roll(segment, period, hits.size());
+        }
+
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (inTransaction) {
+            HitSegment written = segment;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // a failure here rolls the database transaction back as well
+                    written.flush();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        written.publish();
+                    } else {
+                        written.rollback();
+                    }
+                }
+            });
+        }
+
+        for (EndpointHit hit : hits) {
+            if (hit.getAppId() > 0xFFFF) {
+                throw new IllegalStateException("App id " + hit.getAppId() + " does not fit into a segment row");
+            }
+            long micros = EpochMicros.of(hit.getTimestamp());
+            UUID hitId = hit.getHitId();
+            hit.setId(segment.append(micros, hit.getUriId(), hit.getIpId(), hit.getAppId(),
+                    hitId == null ? 0 : hitId.getMostSignificantBits(),
+                    hitId == null ? 0 : hitId.getLeastSignificantBits()));
+        }
+
+        if (inTransaction) {
+            segmentRepository.saveLastHitId(segment.getNextId() - 1);
+        } else {
+            segment.commit();
+            segmentRepository.saveLastHitId(segment.getLastId());
+        }
+    }
+
+    private HitSegment roll(HitSegment current, long period, int rows) {
+        if (rows > capacity) {
+            throw new IllegalStateException("Batch of " + rows + " hits exceeds the segment capacity " + capacity);
+        }
+
+        long firstId;
+        if (current != null) {
+            firstId = current.getNextId();
+        } else {
+            HitTotalsState state = totalsRepository.findState();
+            firstId = (state == null ? 0 : state.getLastHitId()) + 1;
+        }
+
+        Path file = directory.resolve(SEGMENT_PREFIX + String.format("%019d", firstId) + SEGMENT_SUFFIX);
+        try {
+            HitSegment segment = HitSegment.create(file, capacity, firstId, period);
+            segments.add(segment);
+            log.debug("Started hit segment {}", file);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create hit segment " + file, e);
+        }
+    }
+
+    @Override
+    public List<ViewStatsDto> countHits(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        RoaringBitmap uriIds = uriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
+
+        LongKeyIndex keys = new LongKeyIndex();
+        long[][] counts = {new long[64]};
+        scan(from, to, (id, created, uriId, ipId, appId) -> {
+            if (uriIds == null || uriIds.contains(uriId)) {
+                int index = keys.indexOf(key(appId, uriId));
+                if (index == counts[0].length) {
+                    counts[0] = Arrays.copyOf(counts[0], index * 2);
+                }
+                counts[0][index]++;
+            }
+        });
+
+        Names names = names(keys);
+        List<ViewStatsDto> result = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.keyAt(i);
+            result.add(new ViewStatsDto(names.app(key), names.uri(key), counts[0][i]));
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachDistinctIp(LocalDateTime from,
+                                  LocalDateTime to,
+                                  List<String> uris,
+                                  HitRollupJdbcRepository.IpConsumer consumer) {
+        RoaringBitmap uriIds = uriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+
+        LongKeyIndex keys = new LongKeyIndex();
+        List<RoaringBitmap> visitors = new ArrayList<>();
+        scan(from, to, (id, created, uriId, ipId, appId) -> {
+            if (uriIds == null || uriIds.contains(uriId)) {
+                int index = keys.indexOf(key(appId, uriId));
+                if (index == visitors.size()) {
+                    visitors.add(new RoaringBitmap());
+                }
+                visitors.get(index).add(ipId);
+            }
+        });
+
+        RoaringBitmap allIps = RoaringBitmap.or(visitors.iterator());
+        Map<Integer, String> ips = ips(allIps);
+        Names names = names(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.keyAt(i);
+            String app = names.app(key);
+            String uri = names.uri(key);
+            visitors.get(i).forEach((int ipId) -> consumer.accept(app, uri, ipId, ips.get(ipId)));
+        }
+    }
+
+    @Override
+    public void forEachHitAfter(long lastHitId, Consumer<EndpointHit> consumer) {
+        HitEmitter emitter = new HitEmitter(consumer);
+        for (HitSegment segment : segments) {
+            if (segment.getFirstId() + segment.getCommittedRows() > lastHitId + 1) {
+                segment.scanAfter(lastHitId, emitter);
+            }
+        }
+        emitter.flush();
+    }
+
+    @Override
+    public void forEachHitSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        HitEmitter emitter = new HitEmitter(consumer);
+        long fromMicros = EpochMicros.of(from);
+        for (HitSegment segment : segments) {
+            if (segment.overlaps(fromMicros, Long.MAX_VALUE)) {
+                segment.scan(fromMicros, Long.MAX_VALUE, emitter);
+            }
+        }
+        emitter.flush();
+    }
+
+    /**
+     * Scans only the rows created at the exact timestamps of the given hits, which the
+     * block index narrows down to a few blocks. Rows of version 1 segments carry no hit id.
+     */
+    @Override
+    public Set<UUID> findStoredHitIds(Collection<EndpointHit> hits) {
+        Set<UUID> wanted = new HashSet<>();
+        Set<Long> timestamps = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            if (hit.getHitId() != null) {
+                wanted.add(hit.getHitId());
+                timestamps.add(EpochMicros.of(hit.getTimestamp()));
+            }
+        }
+
+        Set<UUID> stored = new HashSet<>();
+        for (long micros : timestamps) {
+            for (HitSegment segment : segments) {
+                if (segment.overlaps(micros, micros + 1)) {
+                    segment.scanHitIds(micros, micros + 1, (created, high, low) -> {
+                        UUID id = new UUID(high, low);
+                        if (wanted.contains(id)) {
+                            stored.add(id);
+                        }
+                    });
+                }
+            }
+        }
+        return stored;
+    }
+
+    @Override
+    public void forEachHitIdSince(LocalDateTime from, Consumer<UUID> consumer) {
+        long fromMicros = EpochMicros.of(from);
+        for (HitSegment segment : segments) {
+            if (segment.overlaps(fromMicros, Long.MAX_VALUE)) {
+                segment.scanHitIds(fromMicros, Long.MAX_VALUE, (created, high, low) ->
+                        consumer.accept(new UUID(high, low)));
+            }
+        }
+    }
+
+    @Override
+    public boolean isInDatabase() {
+        return false;
+    }
+
+    private void scan(LocalDateTime from, LocalDateTime to, HitSegment.RowVisitor visitor) {
+        long fromMicros = EpochMicros.of(from);
+        long toMicros = EpochMicros.of(to);
+        for (HitSegment segment : segments) {
+            if (segment.overlaps(fromMicros, toMicros)) {
+                segment.scan(fromMicros, toMicros, visitor);
+            }
+        }
+    }
+
+    private RoaringBitmap uriIds(List<String> uris) {
+        if (uris == null) {
+            return null;
+        }
+        RoaringBitmap ids = new RoaringBitmap();
+        for (int i = 0; i < uris.size(); i += LOOKUP_CHUNK) {
+            nameRepository.findIds(NameDictionary.URI, uris.subList(i, Math.min(i + LOOKUP_CHUNK, uris.size())))
+                    .values().forEach(ids::add);
+        }
+        return ids;
+    }
+
+    private Names names(LongKeyIndex keys) {
+        Set<Integer> appIds = new HashSet<>();
+        Set<Integer> uriIds = new HashSet<>();
+        for (int i = 0; i < keys.size(); i++) {
+            appIds.add(appId(keys.keyAt(i)));
+            uriIds.add(uriId(keys.keyAt(i)));
+        }
+        return new Names(names(NameDictionary.APP, appIds), names(NameDictionary.URI, uriIds));
+    }
+
+    private Map<Integer, String> names(NameDictionary dictionary, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        List<Integer> list = new ArrayList<>(ids);
+        for (int i = 0; i < list.size(); i += LOOKUP_CHUNK) {
+            List<Integer> chunk = list.subList(i, Math.min(i + LOOKUP_CHUNK, list.size()));
+            names.putAll(nameRepository.findNames(dictionary, chunk));
+        }
+        return names;
+    }
+
+    private Map<Integer, String> ips(RoaringBitmap ids) {
+        Map<Integer, String> ips = new HashMap<>();
+        List<Integer> chunk = new ArrayList<>(LOOKUP_CHUNK);
+        for (int id : ids) {
+            chunk.add(id);
+            if (chunk.size() == LOOKUP_CHUNK) {
+                addIps(ips, chunk);
+            }
+        }
+        addIps(ips, chunk);
+        return ips;
+    }
+
+    private void addIps(Map<Integer, String> ips, List<Integer> ids) {
+        for (IpDictionaryEntry entry : ipRepository.findAllById(ids)) {
+            ips.put(entry.getId(), IpAddressMapper.decode(entry.getAddress()));
+        }
+        ids.clear();
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << 32) | (uriId & 0xFFFFFFFFL);
+    }
+
+    private static int appId(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int uriId(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Turns scanned rows into hits with app and uri names, looking the names up
+     * for a chunk of rows at a time and remembering them for the rest of the scan.
+     */
+    private class HitEmitter implements HitSegment.RowVisitor {
+        private final Consumer<EndpointHit> consumer;
+        private final long[] ids = new long[EMIT_CHUNK];
+        private final long[] created = new long[EMIT_CHUNK];
+        private final int[] uriIds = new int[EMIT_CHUNK];
+        private final int[] ipIds = new int[EMIT_CHUNK];
+        private final int[] appIds = new int[EMIT_CHUNK];
+        private final Map<Integer, String> apps = new HashMap<>();
+        private final Map<Integer, String> uris = new HashMap<>();
+        private int size;
+
+        HitEmitter(Consumer<EndpointHit> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(long id, long createdMicros, int uriId, int ipId, int appId) {
+            ids[size] = id;
+            created[size] = createdMicros;
+            uriIds[size] = uriId;
+            ipIds[size] = ipId;
+            appIds[size] = appId;
+            if (++size == EMIT_CHUNK) {
+                flush();
+            }
+        }
+
+        void flush() {
+            Set<Integer> missingApps = new HashSet<>();
+            Set<Integer> missingUris = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                if (!apps.containsKey(appIds[i])) {
+                    missingApps.add(appIds[i]);
+                }
+                if (!uris.containsKey(uriIds[i])) {
+                    missingUris.add(uriIds[i]);
+                }
+            }
+            apps.putAll(names(NameDictionary.APP, missingApps));
+            uris.putAll(names(NameDictionary.URI, missingUris));
+
+            for (int i = 0; i < size; i++) {
+                consumer.accept(EndpointHit.builder()
+                        .id(ids[i])
+                        .app(apps.get(appIds[i]))
+                        .uri(uris.get(uriIds[i]))
+                        .appId(appIds[i])
+                        .uriId(uriIds[i])
+                        .ipId(ipIds[i])
+                        .timestamp(EpochMicros.toDateTime(created[i]))
+                        .build());
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * App and uri names of the (app id, uri id) keys of a scan.
+     */
+    @AllArgsConstructor
+    private static class Names {
+        private final Map<Integer, String> apps;
+        private final Map<Integer, String> uris;
+
+        String app(long key) {
+            return apps.get(appId(key));
+        }
+
+        String uri(long key) {
+            return uris.get(uriId(key));
+        }
+    }
+}